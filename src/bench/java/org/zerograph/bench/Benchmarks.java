@@ -0,0 +1,15 @@
+package org.zerograph.bench;
+
+/**
+ * Runs the hand-timed comparison benchmarks in turn. The JMH benchmarks in
+ * this package are run separately by the jmh task.
+ *
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) {
+        LockingBenchmark.main(args);
+        RelSetBenchmark.main(args);
+    }
+
+}
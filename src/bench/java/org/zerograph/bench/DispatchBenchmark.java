@@ -0,0 +1,245 @@
+package org.zerograph.bench;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zerograph.CursorSet;
+import org.zerograph.CypherEngine;
+import org.zerograph.Database;
+import org.zerograph.Environment;
+import org.zerograph.Metrics;
+import org.zerograph.Request;
+import org.zerograph.ResourceSet;
+import org.zerograph.Worker;
+import org.zerograph.api.ResponderInterface;
+import org.zerograph.api.ServiceInterface;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+import org.zerograph.resources.CypherResource;
+import org.zerograph.resources.NodeResource;
+import org.zerograph.resources.NodeSetResource;
+import org.zerograph.resources.RelResource;
+import org.zerograph.resources.RelSetResource;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request dispatch through Worker.handle against an in-memory graph,
+ * including resource lookup, execution and YAML serialisation. Responses
+ * are sent over an inproc socket to a service stub that discards them.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+
+    final private static int RESPONSES_PER_BATCH = 256;
+
+    /**
+     * Minimal service providing the socket and resources a worker needs.
+     *
+     */
+    public static class BenchService implements ServiceInterface {
+
+        final private ZMQ.Context context;
+        final private ZMQ.Socket internal;
+        final private Metrics metrics;
+        final private CursorSet cursors;
+
+        public BenchService() {
+            this.context = ZMQ.context(1);
+            this.internal = context.socket(ZMQ.ROUTER);
+            this.internal.bind(getInternalAddress());
+            this.metrics = new Metrics();
+            this.cursors = new CursorSet();
+        }
+
+        public String getHost() {
+            return "localhost";
+        }
+
+        public int getPort() {
+            return 0;
+        }
+
+        public Environment getEnvironment() {
+            return Environment.getInstance();
+        }
+
+        public String getInternalAddress() {
+            return "inproc://bench";
+        }
+
+        public String getExternalAddress() {
+            return "tcp://localhost:0";
+        }
+
+        public ZMQ.Context getContext() {
+            return context;
+        }
+
+        public Metrics getMetrics() {
+            return metrics;
+        }
+
+        public void start() {
+
+        }
+
+        public void stop() {
+            internal.close();
+            context.term();
+        }
+
+        public ResourceSet createResourceSet(ResponderInterface responder) {
+            ResourceSet resourceSet = new ResourceSet();
+            resourceSet.add(new CypherResource(responder, cursors));
+            resourceSet.add(new NodeResource(responder));
+            resourceSet.add(new NodeSetResource(responder, cursors));
+            resourceSet.add(new RelResource(responder));
+            resourceSet.add(new RelSetResource(responder, cursors));
+            return resourceSet;
+        }
+
+        /**
+         * Throw away everything workers have sent.
+         *
+         */
+        public void discard() {
+            while (internal.recv(ZMQ.DONTWAIT) != null) {
+                // discard
+            }
+        }
+
+    }
+
+    /**
+     * Worker exposing request dispatch without a request loop.
+     *
+     */
+    public static class BenchWorker extends Worker<BenchService> {
+
+        public BenchWorker(BenchService service) throws ClientError {
+            super(service);
+            beginResponseBatch(DEFAULT_ENCODING);
+        }
+
+        @Override
+        public void run() {
+
+        }
+
+        public PropertyContainer dispatch(Request request, Database database) throws ClientError, ServerError {
+            return handle(request, database);
+        }
+
+        public void endBatch() {
+            responder.endResponseBatch();
+            responder.beginResponseBatch();
+        }
+
+    }
+
+    private GraphDatabaseService database;
+    private Transaction tx;
+    private Database context;
+    private BenchService service;
+    private BenchWorker worker;
+    private int responses;
+
+    private Request getNode;
+    private Request patchNode;
+    private Request getRel;
+    private Request executeCypher;
+
+    @Setup
+    public void setUp() throws ClientError {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        long nodeId;
+        long relId;
+        try (Transaction tx = database.beginTx()) {
+            Node alice = database.createNode(DynamicLabel.label("Person"));
+            alice.setProperty("name", "Alice");
+            alice.setProperty("age", 33);
+            Node bob = database.createNode(DynamicLabel.label("Person"));
+            bob.setProperty("name", "Bob");
+            Relationship rel = alice.createRelationshipTo(bob, DynamicRelationshipType.withName("KNOWS"));
+            rel.setProperty("since", 1999);
+            nodeId = alice.getId();
+            relId = rel.getId();
+            tx.success();
+        }
+        tx = database.beginTx();
+        context = new Database(database, new CypherEngine(database));
+        context.setTransaction(tx);
+        service = new BenchService();
+        worker = new BenchWorker(service);
+        getNode = Request.parse("GET Node {\"id\":" + nodeId + "}");
+        patchNode = Request.parse("PATCH Node {\"id\":" + nodeId + ",\"properties\":{\"age\":33}}");
+        getRel = Request.parse("GET Rel {\"id\":" + relId + "}");
+        executeCypher = Request.parse("EXECUTE Cypher {\"query\":\"MATCH (a:Person) RETURN a.name\"}");
+    }
+
+    @TearDown
+    public void tearDown() {
+        worker.endBatch();
+        service.discard();
+        worker.getSocket().close();
+        service.stop();
+        tx.close();
+        database.shutdown();
+    }
+
+    private PropertyContainer dispatch(Request request) throws ClientError, ServerError {
+        PropertyContainer entity = worker.dispatch(request, context);
+        responses += 1;
+        if (responses == RESPONSES_PER_BATCH) {
+            worker.endBatch();
+            service.discard();
+            responses = 0;
+        }
+        return entity;
+    }
+
+    @Benchmark
+    public PropertyContainer getNode() throws ClientError, ServerError {
+        return dispatch(getNode);
+    }
+
+    @Benchmark
+    public PropertyContainer patchNode() throws ClientError, ServerError {
+        return dispatch(patchNode);
+    }
+
+    @Benchmark
+    public PropertyContainer getRel() throws ClientError, ServerError {
+        return dispatch(getRel);
+    }
+
+    @Benchmark
+    public PropertyContainer executeCypher() throws ClientError, ServerError {
+        return dispatch(executeCypher);
+    }
+
+}
@@ -0,0 +1,343 @@
+package org.zerograph.bench;
+
+import org.zerograph.Graph;
+import org.zerograph.util.Histogram;
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test. Opens a graph on a local port, fills it with a
+ * synthetic graph over ZAPP and then drives it from a number of concurrent
+ * ZMQ clients, each sending batches of one request type at a time chosen
+ * from a weighted mix. Batch latency is reported per request type. The
+ * graph is dropped when the run is over.
+ *
+ * Settings are given as key=value arguments:
+ *
+ *   port=47490          graph port
+ *   nodes=10000         nodes in the synthetic graph
+ *   degree=5            outgoing relationships per node
+ *   distribution=power  choice of end nodes, uniform or power (hubs)
+ *   clients=8           concurrent clients
+ *   batch=10            requests per batch
+ *   warmup=5            seconds to run before recording
+ *   duration=30         seconds to record
+ *   mix=get:60,create:10,relset:20,cypher:10
+ *   seed=1
+ *
+ * As the graph is created under ZEROGRAPH_HOME, that variable must point
+ * to a scratch directory.
+ */
+public class LoadGenerator {
+
+    final private static int CHUNK_SIZE = 1000;
+    final private static String[] TYPES = {"get", "create", "relset", "cypher"};
+
+    final private Map<String, String> settings;
+    final private int port;
+    final private int nodeCount;
+    final private int degree;
+    final private boolean powerLaw;
+    final private int clientCount;
+    final private int batchSize;
+    final private long warmup;
+    final private long duration;
+    final private int[] weights;
+    final private long seed;
+
+    final private Histogram[] latencies;
+    final private AtomicLong[] errors;
+
+    private ZMQ.Context context;
+    private long[] nodeIds;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getenv("ZEROGRAPH_HOME") == null) {
+            System.err.println("ZEROGRAPH_HOME must be set to a scratch directory");
+            System.exit(1);
+        }
+        LinkedHashMap<String, String> settings = new LinkedHashMap<>();
+        settings.put("port", "47490");
+        settings.put("nodes", "10000");
+        settings.put("degree", "5");
+        settings.put("distribution", "power");
+        settings.put("clients", "8");
+        settings.put("batch", "10");
+        settings.put("warmup", "5");
+        settings.put("duration", "30");
+        settings.put("mix", "get:60,create:10,relset:20,cypher:10");
+        settings.put("seed", "1");
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !settings.containsKey(arg.substring(0, equals))) {
+                System.err.println("Unknown setting: " + arg);
+                System.exit(1);
+            }
+            settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        new LoadGenerator(settings).run();
+        System.exit(0);
+    }
+
+    public LoadGenerator(Map<String, String> settings) {
+        this.settings = settings;
+        this.port = Integer.parseInt(settings.get("port"));
+        this.nodeCount = Integer.parseInt(settings.get("nodes"));
+        this.degree = Integer.parseInt(settings.get("degree"));
+        this.powerLaw = "power".equals(settings.get("distribution"));
+        this.clientCount = Integer.parseInt(settings.get("clients"));
+        this.batchSize = Integer.parseInt(settings.get("batch"));
+        this.warmup = Long.parseLong(settings.get("warmup")) * 1000;
+        this.duration = Long.parseLong(settings.get("duration")) * 1000;
+        this.weights = parseMix(settings.get("mix"));
+        this.seed = Long.parseLong(settings.get("seed"));
+        this.latencies = new Histogram[TYPES.length];
+        this.errors = new AtomicLong[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            latencies[i] = new Histogram();
+            errors[i] = new AtomicLong();
+        }
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[TYPES.length];
+        for (String item : mix.split(",")) {
+            String[] parts = item.split(":");
+            int type = indexOfType(parts[0].trim());
+            if (type < 0 || parts.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + item);
+            }
+            weights[type] = Integer.parseInt(parts[1].trim());
+        }
+        return weights;
+    }
+
+    private static int indexOfType(String name) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void run() throws Exception {
+        System.out.println("Settings: " + settings);
+        Graph.open("localhost", port);
+        context = ZMQ.context(1);
+        try {
+            long start = System.currentTimeMillis();
+            populate();
+            System.out.println(String.format("Created %d nodes and %d relationships in %d ms",
+                    nodeCount, (long) nodeCount * degree, System.currentTimeMillis() - start));
+            drive();
+            report();
+        } finally {
+            context.term();
+            Graph.drop("localhost", port);
+        }
+    }
+
+    private ZMQ.Socket connect() {
+        ZMQ.Socket socket = context.socket(ZMQ.REQ);
+        socket.connect("tcp://localhost:" + port);
+        return socket;
+    }
+
+    /**
+     * Send a batch and return the response lines.
+     *
+     */
+    private static List<String> call(ZMQ.Socket socket, String batch) {
+        socket.send(batch);
+        ArrayList<String> lines = new ArrayList<>();
+        do {
+            String frame = socket.recvStr();
+            if (frame != null && !frame.isEmpty()) {
+                for (String line : frame.split("\n")) {
+                    lines.add(line);
+                }
+            }
+        } while (socket.hasReceiveMore());
+        return lines;
+    }
+
+    private static void checkForErrors(List<String> lines) {
+        for (String line : lines) {
+            if (line.startsWith("error:")) {
+                throw new IllegalStateException("Graph population failed: " + line);
+            }
+        }
+    }
+
+    /**
+     * Create the synthetic graph in bulk batches of CREATE NodeSet and
+     * CREATE RelSet requests, keeping the node IDs for the clients to use.
+     *
+     */
+    private void populate() {
+        ZMQ.Socket socket = connect();
+        Random random = new Random(seed);
+        nodeIds = new long[nodeCount];
+        int created = 0;
+        while (created < nodeCount) {
+            int count = Math.min(CHUNK_SIZE, nodeCount - created);
+            StringBuilder names = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                names.append(i == 0 ? "" : ",").append("\"person").append(created + i).append('"');
+            }
+            List<String> lines = call(socket, "BULK\nCREATE NodeSet {\"labels\":[\"Person\"],\"properties\":{\"name\":[" + names + "]}}\n");
+            checkForErrors(lines);
+            for (String line : lines) {
+                if (line.startsWith("body: [")) {
+                    for (String id : line.substring(7, line.length() - 1).split(",")) {
+                        nodeIds[created++] = Long.parseLong(id);
+                    }
+                }
+            }
+        }
+        StringBuilder batch = new StringBuilder("BULK\n");
+        StringBuilder starts = new StringBuilder();
+        StringBuilder ends = new StringBuilder();
+        int pending = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            for (int j = 0; j < degree; j++) {
+                starts.append(pending == 0 ? "" : ",").append(nodeIds[i]);
+                ends.append(pending == 0 ? "" : ",").append(nodeIds[pickNode(random)]);
+                pending += 1;
+                if (pending == CHUNK_SIZE) {
+                    appendRelSet(batch, starts, ends);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            appendRelSet(batch, starts, ends);
+        }
+        checkForErrors(call(socket, batch.toString()));
+        socket.close();
+    }
+
+    private static void appendRelSet(StringBuilder batch, StringBuilder starts, StringBuilder ends) {
+        batch.append("CREATE RelSet {\"start\":[").append(starts).append("],\"end\":[").append(ends).append("],\"type\":\"KNOWS\"}\n");
+        starts.setLength(0);
+        ends.setLength(0);
+    }
+
+    /**
+     * Choose a node index, either uniformly or with probability inversely
+     * proportional to its index so that low-numbered nodes become hubs.
+     *
+     */
+    private int pickNode(Random random) {
+        if (powerLaw) {
+            return (int) Math.min(nodeCount - 1, Math.floor(Math.pow(nodeCount, random.nextDouble())) - 1);
+        } else {
+            return random.nextInt(nodeCount);
+        }
+    }
+
+    private int pickType(Random random) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int choice = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            choice -= weights[i];
+            if (choice < 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private String buildBatch(int type, Random random) {
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < batchSize; i++) {
+            long id = nodeIds[pickNode(random)];
+            switch (TYPES[type]) {
+                case "get":
+                    batch.append("GET Node {\"id\":").append(id).append("}\n");
+                    break;
+                case "create":
+                    batch.append("CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"new").append(random.nextInt()).append("\"}}\n");
+                    break;
+                case "relset":
+                    batch.append("GET RelSet {\"start\":").append(id).append(",\"type\":\"KNOWS\",\"limit\":10}\n");
+                    break;
+                case "cypher":
+                    batch.append("EXECUTE Cypher {\"query\":\"START a=node({id}) MATCH (a)-[:KNOWS]->(b) RETURN b.name\",\"params\":{\"id\":").append(id).append("}}\n");
+                    break;
+            }
+        }
+        return batch.toString();
+    }
+
+    /**
+     * Run all clients until the warm-up and measurement periods are over.
+     *
+     */
+    private void drive() throws InterruptedException {
+        final long recordFrom = System.currentTimeMillis() + warmup;
+        final long stopAt = recordFrom + duration;
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++) {
+            final Random random = new Random(seed + i + 1);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ZMQ.Socket socket = connect();
+                    long now = System.currentTimeMillis();
+                    while (now < stopAt) {
+                        int type = pickType(random);
+                        String batch = buildBatch(type, random);
+                        long start = System.nanoTime();
+                        List<String> lines = call(socket, batch);
+                        long elapsed = System.nanoTime() - start;
+                        now = System.currentTimeMillis();
+                        if (now >= recordFrom && now < stopAt) {
+                            latencies[type].record(elapsed / 1000);
+                            for (String line : lines) {
+                                if (line.startsWith("error:")) {
+                                    errors[type].incrementAndGet();
+                                }
+                            }
+                        }
+                    }
+                    socket.close();
+                }
+            });
+            thread.setName("client-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void report() {
+        double seconds = duration / 1000.0;
+        System.out.println(String.format("%-8s %10s %12s %10s %10s %10s %8s",
+                "type", "batches", "requests/s", "p50 us", "p99 us", "p999 us", "errors"));
+        long totalRequests = 0;
+        for (int i = 0; i < TYPES.length; i++) {
+            Histogram histogram = latencies[i];
+            long requests = histogram.getCount() * batchSize;
+            totalRequests += requests;
+            System.out.println(String.format("%-8s %10d %12.1f %10d %10d %10d %8d",
+                    TYPES[i], histogram.getCount(), requests / seconds,
+                    histogram.getValueAtPercentile(50.0), histogram.getValueAtPercentile(99.0),
+                    histogram.getValueAtPercentile(99.9), errors[i].get()));
+        }
+        System.out.println(String.format("%-8s %10s %12.1f", "total", "", totalRequests / seconds));
+    }
+
+}
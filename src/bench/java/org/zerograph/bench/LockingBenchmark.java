@@ -0,0 +1,120 @@
+package org.zerograph.bench;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Lock;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.zerograph.CypherEngine;
+import org.zerograph.Database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the cost of node creation and update through Database with the
+ * same work done under the read and write locks that were previously taken
+ * for every mutation.
+ *
+ */
+public class LockingBenchmark {
+
+    final private static int BATCH_SIZE = 1000;
+    final private static int WARM_UP_BATCHES = 20;
+    final private static int BATCHES = 100;
+
+    final private static List<String> LABELS = Arrays.asList("Person");
+    final private static Map<String, Object> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put("name", "Alice");
+        PROPERTIES.put("age", 33);
+    }
+
+    private interface Operation {
+        void run(Database context, Transaction tx, long id);
+    }
+
+    public static void main(String[] args) {
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try {
+            long[] ids = createTargets(database);
+            report("create node, read+write locks", measure(database, ids, new Operation() {
+                public void run(Database context, Transaction tx, long id) {
+                    Node node = context.createNode(LABELS, PROPERTIES);
+                    Lock writeLock = tx.acquireWriteLock(node);
+                    Lock readLock = tx.acquireReadLock(node);
+                    readLock.release();
+                    writeLock.release();
+                }
+            }));
+            report("create node, LockPolicy.NONE", measure(database, ids, new Operation() {
+                public void run(Database context, Transaction tx, long id) {
+                    context.createNode(LABELS, PROPERTIES);
+                }
+            }));
+            report("patch node, read+write locks", measure(database, ids, new Operation() {
+                public void run(Database context, Transaction tx, long id) {
+                    Node node = context.getNode(id);
+                    Lock writeLock = tx.acquireWriteLock(node);
+                    Lock readLock = tx.acquireReadLock(node);
+                    node.setProperty("name", "Alice");
+                    node.setProperty("age", 33);
+                    readLock.release();
+                    writeLock.release();
+                }
+            }));
+            report("patch node, LockPolicy.NONE", measure(database, ids, new Operation() {
+                public void run(Database context, Transaction tx, long id) {
+                    context.patchNode(id, LABELS, PROPERTIES);
+                }
+            }));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    private static long[] createTargets(GraphDatabaseService database) {
+        long[] ids = new long[BATCH_SIZE];
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Node node = database.createNode(DynamicLabel.label("Person"));
+                ids[i] = node.getId();
+            }
+            tx.success();
+        }
+        return ids;
+    }
+
+    /**
+     * Run an operation in batches of BATCH_SIZE per transaction and return
+     * the mean time per operation in nanoseconds, excluding warm-up.
+     *
+     */
+    private static double measure(GraphDatabaseService database, long[] ids, Operation operation) {
+        Database context = new Database(database, new CypherEngine(database));
+        long elapsed = 0;
+        for (int batch = 0; batch < WARM_UP_BATCHES + BATCHES; batch++) {
+            long start = System.nanoTime();
+            try (Transaction tx = database.beginTx()) {
+                context.setTransaction(tx);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    operation.run(context, tx, ids[i]);
+                }
+                tx.success();
+            }
+            if (batch >= WARM_UP_BATCHES) {
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        return (double) elapsed / (BATCHES * BATCH_SIZE);
+    }
+
+    private static void report(String name, double nanosPerOperation) {
+        System.out.println(String.format("%-32s %10.1f ns/op", name, nanosPerOperation));
+    }
+
+}
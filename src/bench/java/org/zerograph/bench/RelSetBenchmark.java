@@ -0,0 +1,107 @@
+package org.zerograph.bench;
+
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.zerograph.CypherEngine;
+import org.zerograph.Database;
+
+import java.util.HashMap;
+
+/**
+ * Compares matching the relationships between a high-degree node and a
+ * low-degree node using the Cypher query previously issued by Database
+ * with the core API scan now used.
+ *
+ */
+public class RelSetBenchmark {
+
+    final private static int DEGREE = 10000;
+    final private static int WARM_UP_ITERATIONS = 200;
+    final private static int ITERATIONS = 1000;
+
+    final private static String QUERY = "START a=node({a}), b=node({b}) MATCH (a)-[ab:`KNOWS`]->(b) RETURN ab";
+
+    private interface Operation {
+        int run(Node hub, Node leaf);
+    }
+
+    public static void main(String[] args) {
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try {
+            final CypherEngine engine = new CypherEngine(database);
+            final Database context = new Database(database, engine);
+            Node hub;
+            Node leaf;
+            try (Transaction tx = database.beginTx()) {
+                RelationshipType knows = DynamicRelationshipType.withName("KNOWS");
+                hub = database.createNode();
+                for (int i = 0; i < DEGREE; i++) {
+                    hub.createRelationshipTo(database.createNode(), knows);
+                }
+                leaf = database.createNode();
+                hub.createRelationshipTo(leaf, knows);
+                tx.success();
+            }
+            report("hub->leaf, Cypher", measure(database, hub, leaf, new Operation() {
+                public int run(Node hub, Node leaf) {
+                    HashMap<String, Object> params = new HashMap<>(2);
+                    params.put("a", hub.getId());
+                    params.put("b", leaf.getId());
+                    ExecutionResult result = engine.execute(QUERY, params);
+                    int count = 0;
+                    try (ResourceIterator<Object> rels = result.columnAs("ab")) {
+                        while (rels.hasNext()) {
+                            rels.next();
+                            count += 1;
+                        }
+                    }
+                    return count;
+                }
+            }));
+            report("hub->leaf, core API", measure(database, hub, leaf, new Operation() {
+                public int run(Node hub, Node leaf) {
+                    int count = 0;
+                    for (Relationship rel : context.matchRelationshipSet(hub, leaf, "KNOWS")) {
+                        count += 1;
+                    }
+                    return count;
+                }
+            }));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Return the mean time per match in nanoseconds, excluding warm-up.
+     *
+     */
+    private static double measure(GraphDatabaseService database, Node hub, Node leaf, Operation operation) {
+        long elapsed = 0;
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+                long start = System.nanoTime();
+                if (operation.run(hub, leaf) != 1) {
+                    throw new IllegalStateException("Expected exactly one match");
+                }
+                if (i >= WARM_UP_ITERATIONS) {
+                    elapsed += System.nanoTime() - start;
+                }
+            }
+            tx.success();
+        }
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static void report(String name, double nanosPerOperation) {
+        System.out.println(String.format("%-32s %10.1f ns/op", name, nanosPerOperation));
+    }
+
+}
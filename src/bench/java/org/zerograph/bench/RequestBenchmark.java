@@ -0,0 +1,91 @@
+package org.zerograph.bench;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zerograph.Request;
+import org.zerograph.except.MalformedRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request line parsing and pointer resolution, as done by GraphWorker for
+ * every line of a batch.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@State(Scope.Thread)
+public class RequestBenchmark {
+
+    final private static byte[] GET_NODE = bytes("GET Node {\"id\":1234}");
+    final private static byte[] CREATE_NODE = bytes("CREATE Node {\"labels\":[\"Person\",\"Employee\"]," +
+            "\"properties\":{\"name\":\"Alice Smith\",\"age\":33,\"email\":\"alice@example.com\"," +
+            "\"score\":0.75,\"active\":true,\"tags\":[\"admin\",\"ops\"]}}");
+    final private static byte[] CREATE_REL = bytes("CREATE Rel {\"start*\":0,\"end*\":1,\"type\":\"KNOWS\"," +
+            "\"properties\":{\"since\":1999}}");
+
+    private GraphDatabaseService database;
+    private Transaction tx;
+    private ArrayList<PropertyContainer> outputValues;
+    private Request pointerRequest;
+
+    private static byte[] bytes(String line) {
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup
+    public void setUp() throws MalformedRequest {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        tx = database.beginTx();
+        outputValues = new ArrayList<>();
+        outputValues.add(database.createNode());
+        outputValues.add(database.createNode());
+        pointerRequest = Request.parse(CREATE_REL, 0, CREATE_REL.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tx.close();
+        database.shutdown();
+    }
+
+    @Benchmark
+    public Request parseGetNode() throws MalformedRequest {
+        return Request.parse(GET_NODE, 0, GET_NODE.length);
+    }
+
+    @Benchmark
+    public Request parseCreateNode() throws MalformedRequest {
+        return Request.parse(CREATE_NODE, 0, CREATE_NODE.length);
+    }
+
+    @Benchmark
+    public Request parseCreateRel() throws MalformedRequest {
+        return Request.parse(CREATE_REL, 0, CREATE_REL.length);
+    }
+
+    @Benchmark
+    public Request resolvePointers() {
+        pointerRequest.resolvePointers(outputValues);
+        return pointerRequest;
+    }
+
+}
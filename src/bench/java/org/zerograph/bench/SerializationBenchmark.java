@@ -0,0 +1,141 @@
+package org.zerograph.bench;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zerograph.CypherEngine;
+import org.zerograph.util.MessagePack;
+import org.zerograph.util.YAML;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of nodes, relationships and paths carrying realistic property
+ * maps into the YAML and MessagePack response formats, written into a
+ * reused buffer as the responders do.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private GraphDatabaseService database;
+    private Transaction tx;
+
+    private Node node;
+    private Relationship rel;
+    private Path path;
+
+    private StringBuilder buffer;
+    private MessagePack packer;
+
+    @Setup
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try (Transaction tx = database.beginTx()) {
+            RelationshipType knows = DynamicRelationshipType.withName("KNOWS");
+            Node alice = createPerson("Alice Smith", 33);
+            Node bob = createPerson("Bob Jones", 44);
+            Node carol = createPerson("Carol White", 55);
+            Relationship first = alice.createRelationshipTo(bob, knows);
+            first.setProperty("since", 1999);
+            first.setProperty("context", "work");
+            Relationship second = bob.createRelationshipTo(carol, knows);
+            second.setProperty("since", 2004);
+            tx.success();
+        }
+        tx = database.beginTx();
+        CypherEngine engine = new CypherEngine(database);
+        try (ResourceIterator<Path> paths = engine.execute("MATCH p=(a)-[:KNOWS]->()-[:KNOWS]->() RETURN p").columnAs("p")) {
+            path = paths.next();
+        }
+        node = path.startNode();
+        rel = path.relationships().iterator().next();
+        buffer = new StringBuilder(65536);
+        packer = new MessagePack(65536);
+    }
+
+    private Node createPerson(String name, int age) {
+        Node person = database.createNode(DynamicLabel.label("Person"), DynamicLabel.label("Employee"));
+        person.setProperty("name", name);
+        person.setProperty("age", age);
+        person.setProperty("email", name.toLowerCase().replace(' ', '.') + "@example.com");
+        person.setProperty("score", 0.75);
+        person.setProperty("active", true);
+        person.setProperty("joined", 1388534400000L);
+        person.setProperty("tags", new String[] {"admin", "ops", "on-call"});
+        return person;
+    }
+
+    @TearDown
+    public void tearDown() {
+        tx.close();
+        database.shutdown();
+    }
+
+    @Benchmark
+    public int yamlNode() throws IOException {
+        buffer.setLength(0);
+        YAML.write(buffer, node);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public int yamlRel() throws IOException {
+        buffer.setLength(0);
+        YAML.write(buffer, rel);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public int yamlPath() throws IOException {
+        buffer.setLength(0);
+        YAML.write(buffer, path);
+        return buffer.length();
+    }
+
+    @Benchmark
+    public int msgpackNode() {
+        packer.clear();
+        packer.pack(node);
+        return packer.size();
+    }
+
+    @Benchmark
+    public int msgpackRel() {
+        packer.clear();
+        packer.pack(rel);
+        return packer.size();
+    }
+
+    @Benchmark
+    public int msgpackPath() {
+        packer.clear();
+        packer.pack(path);
+        return packer.size();
+    }
+
+}
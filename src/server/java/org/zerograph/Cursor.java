@@ -0,0 +1,209 @@
+package org.zerograph;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An open result being read one page at a time. Each cursor reads within a
+ * read-only transaction of its own, which is suspended between pages so
+ * that whichever worker handles the next page can resume it and carry on
+ * from the same iterator, rather than running the request again.
+ *
+ * While a cursor is resumed, the transaction of the request batch is
+ * suspended in its place. Only one request can read from a cursor at a
+ * time, so each page advances it atomically.
+ *
+ */
+public class Cursor {
+
+    final private long id;
+    final private String resource;
+    final private TransactionManager transactionManager;
+    final private ReentrantLock lock;
+
+    private Transaction transaction;
+    private javax.transaction.Transaction suspended;  // cursor transaction, between pages
+    private javax.transaction.Transaction outer;      // batch transaction, while resumed
+    private Iterator<?> items;
+    private List<String> columns;
+
+    private volatile long lastAccessed;
+
+    /**
+     * Open a cursor by beginning a new transaction in place of the current
+     * one. The cursor is left resumed by the calling thread, ready for its
+     * items to be set.
+     *
+     */
+    public Cursor(long id, String resource, GraphDatabaseService database) {
+        this.id = id;
+        this.resource = resource;
+        this.transactionManager = ((GraphDatabaseAPI) database).getDependencyResolver().resolveDependency(TransactionManager.class);
+        this.lock = new ReentrantLock();
+        this.lock.lock();
+        this.outer = suspendCurrent();
+        try {
+            this.transaction = database.beginTx();
+        } catch (RuntimeException ex) {
+            resumeOuter();
+            lock.unlock();
+            throw ex;
+        }
+        touch();
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getResource() {
+        return this.resource;
+    }
+
+    public Iterator<?> getItems() {
+        return this.items;
+    }
+
+    public List<String> getColumns() {
+        return this.columns;
+    }
+
+    public void setItems(Iterator<?> items, List<String> columns) {
+        this.items = items;
+        this.columns = columns;
+    }
+
+    public void setItems(Iterator<?> items) {
+        setItems(items, null);
+    }
+
+    public long getLastAccessed() {
+        return this.lastAccessed;
+    }
+
+    public void touch() {
+        this.lastAccessed = System.currentTimeMillis();
+    }
+
+    /**
+     * Resume the cursor transaction on the calling thread, suspending the
+     * current one until the cursor is next suspended or closed.
+     *
+     * @return false if the cursor is being read by another request or has
+     *         been closed
+     */
+    public boolean tryResume() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        if (transaction == null) {
+            lock.unlock();
+            return false;
+        }
+        try {
+            resumeCursor();
+        } catch (RuntimeException ex) {
+            lock.unlock();
+            throw ex;
+        }
+        touch();
+        return true;
+    }
+
+    /**
+     * Suspend the cursor transaction, once a page has been read, and
+     * resume the transaction it replaced.
+     *
+     */
+    public void suspend() {
+        try {
+            suspended = suspendCurrent();
+            resumeOuter();
+        } finally {
+            touch();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close a resumed cursor, rolling back its transaction, and resume the
+     * transaction it replaced.
+     *
+     */
+    public void close() {
+        try {
+            if (items instanceof ResourceIterator) {
+                ((ResourceIterator) items).close();
+            }
+            transaction.close();
+        } finally {
+            transaction = null;
+            items = null;
+            columns = null;
+            try {
+                resumeOuter();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Close a suspended cursor from any thread, waiting for a page being
+     * read to finish first.
+     *
+     */
+    public void discard() {
+        lock.lock();
+        try {
+            if (transaction != null) {
+                resumeCursor();
+                lock.lock();  // held again as close releases it
+                close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void resumeCursor() {
+        outer = suspendCurrent();
+        try {
+            transactionManager.resume(suspended);
+            suspended = null;
+        } catch (InvalidTransactionException | SystemException ex) {
+            resumeOuter();
+            throw new IllegalStateException("Cannot resume cursor " + id, ex);
+        }
+    }
+
+    private javax.transaction.Transaction suspendCurrent() {
+        try {
+            return transactionManager.suspend();
+        } catch (SystemException ex) {
+            throw new IllegalStateException("Cannot suspend transaction", ex);
+        }
+    }
+
+    private void resumeOuter() {
+        javax.transaction.Transaction outer = this.outer;
+        this.outer = null;
+        if (outer != null) {
+            try {
+                transactionManager.resume(outer);
+            } catch (InvalidTransactionException | SystemException ex) {
+                throw new IllegalStateException("Cannot resume transaction", ex);
+            }
+        }
+    }
+
+}
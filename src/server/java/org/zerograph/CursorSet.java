@@ -0,0 +1,139 @@
+package org.zerograph;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The open cursors of a Graph. A request batch may be handled by any
+ * worker so cursors are shared between them. Cursors not used within the
+ * idle timeout are evicted, and their transactions rolled back.
+ *
+ */
+public class CursorSet {
+
+    final public static int DEFAULT_IDLE_TIMEOUT = 60000;  // milliseconds
+
+    final private LinkedHashMap<Long, Cursor> cursors;
+    final private long idleTimeout;
+
+    private long lastID = 0;
+
+    public CursorSet(long idleTimeout) {
+        this.cursors = new LinkedHashMap<>(16, 0.75f, true);
+        this.idleTimeout = idleTimeout;
+    }
+
+    public CursorSet() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Open a new cursor, resumed by the calling thread in place of its
+     * current transaction.
+     *
+     */
+    public Cursor open(String resource, GraphDatabaseService database) {
+        discard(evictIdle());
+        Cursor cursor;
+        synchronized (this) {
+            lastID += 1;
+            cursor = new Cursor(lastID, resource, database);
+            cursors.put(cursor.getId(), cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Fetch an open cursor by ID, marking it as recently used.
+     *
+     * @param id
+     * @return the cursor or null if no such cursor is open
+     */
+    public Cursor get(long id) {
+        discard(evictIdle());
+        synchronized (this) {
+            Cursor cursor = cursors.get(id);
+            if (cursor != null) {
+                cursor.touch();
+            }
+            return cursor;
+        }
+    }
+
+    /**
+     * Close a cursor resumed by the calling thread.
+     *
+     */
+    public void close(Cursor cursor) {
+        synchronized (this) {
+            cursors.remove(cursor.getId());
+        }
+        cursor.close();
+    }
+
+    /**
+     * Close a suspended cursor by ID.
+     *
+     * @return false if no such cursor is open
+     */
+    public boolean close(long id) {
+        Cursor cursor;
+        synchronized (this) {
+            cursor = cursors.remove(id);
+        }
+        if (cursor == null) {
+            return false;
+        }
+        cursor.discard();
+        return true;
+    }
+
+    /**
+     * Close all cursors, such as before their database is shut down.
+     *
+     */
+    public void closeAll() {
+        ArrayList<Cursor> closed;
+        synchronized (this) {
+            closed = new ArrayList<>(cursors.values());
+            cursors.clear();
+        }
+        discard(closed);
+    }
+
+    public int size() {
+        discard(evictIdle());
+        synchronized (this) {
+            return cursors.size();
+        }
+    }
+
+    // cursors are discarded outside the monitor, as a page being read
+    // from one must finish before it can be closed
+    private static void discard(List<Cursor> evicted) {
+        for (Cursor cursor : evicted) {
+            cursor.discard();
+        }
+    }
+
+    private synchronized List<Cursor> evictIdle() {
+        ArrayList<Cursor> evicted = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+        Iterator<Cursor> iterator = cursors.values().iterator();
+        while (iterator.hasNext()) {
+            Cursor cursor = iterator.next();
+            if (cursor.getLastAccessed() < cutoff) {
+                iterator.remove();
+                evicted.add(cursor);
+            } else {
+                break;  // remaining cursors are in access order
+            }
+        }
+        return evicted;
+    }
+
+}
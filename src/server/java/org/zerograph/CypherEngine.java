@@ -0,0 +1,77 @@
+package org.zerograph;
+
+import org.neo4j.cypher.CypherException;
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived Cypher execution engine, shared by all workers of a Graph so
+ * that compiled query plans survive from one request batch to the next.
+ *
+ * Neo4j does not report plan cache activity so hits and misses are counted
+ * here by tracking query texts in an LRU of the same size as the engine's
+ * own cache (the Neo4j default of 100 entries).
+ */
+public class CypherEngine {
+
+    final public static int PLAN_CACHE_SIZE = 100;
+
+    final private ExecutionEngine engine;
+    final private LinkedHashMap<String, Boolean> queries;
+
+    final private AtomicLong hits;
+    final private AtomicLong misses;
+
+    public CypherEngine(GraphDatabaseService database) {
+        this.engine = new ExecutionEngine(database);
+        this.queries = new LinkedHashMap<String, Boolean>(PLAN_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > PLAN_CACHE_SIZE;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public ExecutionResult execute(String query) throws CypherException {
+        count(query);
+        return engine.execute(query);
+    }
+
+    public ExecutionResult execute(String query, Map<String, Object> params) throws CypherException {
+        count(query);
+        return engine.execute(query, params);
+    }
+
+    public ExecutionResult profile(String query, Map<String, Object> params) throws CypherException {
+        count(query);
+        return engine.profile(query, params);
+    }
+
+    public long getPlanCacheHits() {
+        return hits.get();
+    }
+
+    public long getPlanCacheMisses() {
+        return misses.get();
+    }
+
+    private void count(String query) {
+        boolean cached;
+        synchronized (queries) {
+            cached = queries.put(query, Boolean.TRUE) != null;
+        }
+        if (cached) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+}
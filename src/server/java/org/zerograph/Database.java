@@ -1,47 +1,116 @@
 package org.zerograph;
 
 import org.neo4j.cypher.CypherException;
-import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.Direction;
-import org.neo4j.graphdb.DynamicLabel;
-import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
-import org.neo4j.graphdb.Lock;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.DeadlockDetectedException;
 import org.neo4j.tooling.GlobalGraphOperations;
 import org.zerograph.api.DatabaseInterface;
-import org.zerograph.util.IterableExecutor;
 import org.zerograph.util.IterableResult;
+import org.zerograph.util.StripedLock;
 
+import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Database implements DatabaseInterface {
 
     final private GraphDatabaseService database;
-    final private ExecutionEngine engine;
+    final private CypherEngine engine;
     final private GlobalGraphOperations global;
-    final private Transaction transaction;
+    final private StripedLock mergeLocks;
+    final private ArrayList<ReentrantLock> heldMergeLocks;
 
-    final private HashMap<String, Label> labelCache;
-    final private HashMap<String, RelationshipType> typeCache;
+    final private TokenCache tokens;
 
-    public Database(GraphDatabaseService database, Transaction transaction) {
+    private Transaction transaction;
+
+    final public static long MERGE_LOCK_TIMEOUT = 10000;  // milliseconds
+
+    public Database(GraphDatabaseService database, CypherEngine engine, StripedLock mergeLocks, TokenCache tokens) {
         this.database = database;
-        this.engine = new ExecutionEngine(database);
+        this.engine = engine;
         this.global = GlobalGraphOperations.at(database);
+        this.mergeLocks = mergeLocks;
+        this.heldMergeLocks = new ArrayList<>();
+        this.tokens = tokens;
+    }
+
+    public Database(GraphDatabaseService database, CypherEngine engine) {
+        this(database, engine, new StripedLock(), new TokenCache());
+    }
+
+    public Database(GraphDatabaseService database, Transaction transaction) {
+        this(database, new CypherEngine(database));
         this.transaction = transaction;
-        this.labelCache = new HashMap<>();
-        this.typeCache = new HashMap<>();
+    }
+
+    @Override
+    public GraphDatabaseService getDatabase() {
+        return this.database;
+    }
+
+    /**
+     * Bind this context to the transaction of the current request batch.
+     *
+     * @param transaction
+     */
+    public void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    /**
+     * Find the merge lock stripe guarding a label, property key and value.
+     *
+     * @throws ClassCastException if the value cannot be stored as a property
+     */
+    public int getMergeStripe(String label, String key, Object value) {
+        return mergeStripe(label, key, toPropertyValue(value));
+    }
+
+    /**
+     * Take a set of merge locks for the current transaction. Locks are
+     * always taken in stripe order, so that two transactions locking the
+     * same stripes cannot deadlock. Locks already held are taken again
+     * without waiting.
+     *
+     * @param stripes
+     */
+    public void acquireMergeLocks(int[] stripes) {
+        int[] sortedStripes = stripes.clone();
+        Arrays.sort(sortedStripes);
+        for (int i = 0; i < sortedStripes.length; i++) {
+            if (i == 0 || sortedStripes[i] != sortedStripes[i - 1]) {
+                acquireMergeLock(sortedStripes[i]);
+            }
+        }
+    }
+
+    /**
+     * Release the merge locks taken during the last transaction. This must
+     * be called once that transaction has been closed, so that other
+     * transactions can see any nodes created under those locks.
+     *
+     */
+    public void releaseMergeLocks() {
+        for (ReentrantLock lock : heldMergeLocks) {
+            lock.unlock();
+        }
+        heldMergeLocks.clear();
     }
 
     @Override
@@ -67,47 +136,59 @@ public class Database implements DatabaseInterface {
     @Override
     public Node putNode(long id, List labelNames, Map properties) throws NotFoundException {
         Node node = database.getNodeById(id);
-        Lock writeLock = transaction.acquireWriteLock(node);
-        Lock readLock = transaction.acquireReadLock(node);
-        removeLabels(node);
-        removeProperties(node);
-        addLabels(node, labelNames);
-        addProperties(node, properties);
-        readLock.release();
-        writeLock.release();
+        lock(node, LockPolicy.HOLD);
+        replaceLabels(node, labelNames);
+        replaceProperties(node, properties);
         return node;
     }
 
     @Override
     public Node patchNode(long id, List labelNames, Map properties) throws NotFoundException {
-        Node node = database.getNodeById(id);
-        Lock writeLock = transaction.acquireWriteLock(node);
-        Lock readLock = transaction.acquireReadLock(node);
+        Node node = database.getNodeById(id);  // LockPolicy.NONE
         addLabels(node, labelNames);
         addProperties(node, properties);
-        readLock.release();
-        writeLock.release();
         return node;
     }
 
     @Override
     public Node createNode(List labelNames, Map properties) {
-        Node node = database.createNode();
-        Lock writeLock = transaction.acquireWriteLock(node);
-        Lock readLock = transaction.acquireReadLock(node);
+        Node node = database.createNode();  // invisible to others until commit, so LockPolicy.NONE
         addLabels(node, labelNames);
         addProperties(node, properties);
-        readLock.release();
-        writeLock.release();
         return node;
     }
 
+    @Override
+    public long[] createNodes(List labelNames, Map<String, List> columns, int count) {
+        ArrayList<Label> labelList = new ArrayList<>(labelNames.size());
+        for (Object labelName : labelNames) {
+            if (labelName != null) {
+                labelList.add(getLabel(labelName.toString()));
+            }
+        }
+        Label[] labels = labelList.toArray(new Label[labelList.size()]);
+        String[] keys = columns.keySet().toArray(new String[columns.size()]);
+        List[] values = new List[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = columns.get(keys[i]);
+        }
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            Node node = database.createNode(labels);
+            for (int j = 0; j < keys.length; j++) {
+                Object value = values[j].get(i);
+                if (value != null) {
+                    setProperty(node, keys[j], value);
+                }
+            }
+            ids[i] = node.getId();
+        }
+        return ids;
+    }
+
     @Override
     public void deleteNode(long id) throws NotFoundException {
-        Node node = database.getNodeById(id);
-        Lock writeLock = transaction.acquireWriteLock(node);
-        node.delete();
-        writeLock.release();
+        database.getNodeById(id).delete();  // LockPolicy.NONE
     }
 
     @Override
@@ -118,43 +199,54 @@ public class Database implements DatabaseInterface {
     @Override
     public Relationship putRelationship(long id, Map properties) throws NotFoundException {
         Relationship rel = database.getRelationshipById(id);
-        Lock writeLock = transaction.acquireWriteLock(rel);
-        Lock readLock = transaction.acquireReadLock(rel);
-        removeProperties(rel);
-        addProperties(rel, properties);
-        readLock.release();
-        writeLock.release();
+        lock(rel, LockPolicy.HOLD);
+        replaceProperties(rel, properties);
         return rel;
     }
 
     @Override
     public Relationship patchRelationship(long id, Map properties) throws NotFoundException {
-        Relationship rel = database.getRelationshipById(id);
-        Lock writeLock = transaction.acquireWriteLock(rel);
-        Lock readLock = transaction.acquireReadLock(rel);
+        Relationship rel = database.getRelationshipById(id);  // LockPolicy.NONE
         addProperties(rel, properties);
-        readLock.release();
-        writeLock.release();
         return rel;
     }
 
     @Override
     public Relationship createRelationship(Node startNode, Node endNode, String type, Map properties) {
-        Relationship rel = startNode.createRelationshipTo(endNode, getRelationshipType(type));
-        Lock writeLock = transaction.acquireWriteLock(rel);
-        Lock readLock = transaction.acquireReadLock(rel);
+        Relationship rel = startNode.createRelationshipTo(endNode, getRelationshipType(type));  // LockPolicy.NONE
         addProperties(rel, properties);
-        readLock.release();
-        writeLock.release();
         return rel;
     }
 
+    @Override
+    public int createRelationships(long[] startNodeIds, long[] endNodeIds, String type, Map<String, List> columns) throws NotFoundException {
+        RelationshipType relationshipType = getRelationshipType(type);
+        String[] keys = columns.keySet().toArray(new String[columns.size()]);
+        List[] values = new List[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = columns.get(keys[i]);
+        }
+        // edge lists are commonly grouped by start node, so keep hold of the last one
+        Node startNode = null;
+        for (int i = 0; i < startNodeIds.length; i++) {
+            if (startNode == null || startNode.getId() != startNodeIds[i]) {
+                startNode = database.getNodeById(startNodeIds[i]);
+            }
+            Node endNode = database.getNodeById(endNodeIds[i]);
+            Relationship rel = startNode.createRelationshipTo(endNode, relationshipType);
+            for (int j = 0; j < keys.length; j++) {
+                Object value = values[j].get(i);
+                if (value != null) {
+                    setProperty(rel, keys[j], value);
+                }
+            }
+        }
+        return startNodeIds.length;
+    }
+
     @Override
     public void deleteRelationship(long id) throws NotFoundException {
-        Relationship rel = database.getRelationshipById(id);
-        Lock writeLock = transaction.acquireWriteLock(rel);
-        rel.delete();
-        writeLock.release();
+        database.getRelationshipById(id).delete();  // LockPolicy.NONE
     }
 
     @Override
@@ -168,12 +260,31 @@ public class Database implements DatabaseInterface {
 
     @Override
     public Iterable<Node> mergeNodeSet(String label, String key, Object value) {
-        String query = "MERGE (n:`" + label.replace("`", "``") +
-                "` {`" + key.replace("`", "``") + "`:{value}}) RETURN n";
-        HashMap<String, Object> params = new HashMap<>(1);
-        params.put("value", value);
-        IterableExecutor<Node> executor = new IterableExecutor<>(engine);
-        return executor.execute(query, params, "n");
+        ArrayList<Node> nodes = new ArrayList<>(1);
+        mergeNode(getLabel(label), key, toPropertyValue(value), nodes);
+        return nodes;
+    }
+
+    @Override
+    public int mergeNodes(String label, String key, List values, long[] ids) {
+        Label mergeLabel = getLabel(label);
+        Object[] propertyValues = new Object[values.size()];
+        int[] stripes = new int[propertyValues.length];
+        for (int i = 0; i < propertyValues.length; i++) {
+            propertyValues[i] = toPropertyValue(values.get(i));
+            stripes[i] = mergeStripe(label, key, propertyValues[i]);
+        }
+        acquireMergeLocks(stripes);
+        int created = 0;
+        ArrayList<Node> nodes = new ArrayList<>(1);
+        for (int i = 0; i < propertyValues.length; i++) {
+            nodes.clear();
+            if (mergeNode(mergeLabel, key, propertyValues[i], nodes)) {
+                created += 1;
+            }
+            ids[i] = nodes.get(0).getId();
+        }
+        return created;
     }
 
     @Override
@@ -186,30 +297,13 @@ public class Database implements DatabaseInterface {
 
     @Override
     public Iterable<Relationship> matchRelationshipSet(Node startNode, Node endNode, String type) {
+        RelationshipType relationshipType = type == null ? null : getRelationshipType(type);
         if (startNode != null && endNode != null) {
-            String query;
-            if (type == null) {
-                query = "START a=node({a}), b=node({b}) MATCH (a)-[ab]->(b) RETURN ab";
-            } else {
-                query = "START a=node({a}), b=node({b}) MATCH (a)-[ab:`" + type + "`]->(b) RETURN ab";
-            }
-            HashMap<String, Object> params = new HashMap<>(1);
-            params.put("a", startNode.getId());
-            params.put("b", endNode.getId());
-            IterableExecutor<Relationship> executor = new IterableExecutor<>(engine);
-            return executor.execute(query, params, "ab");
+            return matchRelationshipsBetween(startNode, endNode, relationshipType);
         } else if (startNode != null) {
-            if (type == null) {
-                return startNode.getRelationships(Direction.OUTGOING);
-            } else {
-                return startNode.getRelationships(Direction.OUTGOING, getRelationshipType(type));
-            }
+            return getRelationships(startNode, Direction.OUTGOING, relationshipType);
         } else if (endNode != null) {
-            if (type == null) {
-                return endNode.getRelationships(Direction.INCOMING);
-            } else {
-                return endNode.getRelationships(Direction.INCOMING, getRelationshipType(type));
-            }
+            return getRelationships(endNode, Direction.INCOMING, relationshipType);
         } else {
             throw new IllegalArgumentException("Either start or end nodes must be specified");
         }
@@ -217,56 +311,109 @@ public class Database implements DatabaseInterface {
 
     @Override
     public Iterable<Relationship> mergeRelationshipSet(Node startNode, Node endNode, String type) {
-        String query = "START a=node({a}), b=node({b}) MERGE (a)-[ab:`" + type + "`]->(b) RETURN ab";
-        HashMap<String, Object> params = new HashMap<>(1);
-        params.put("a", startNode.getId());
-        params.put("b", endNode.getId());
-        IterableExecutor<Relationship> executor = new IterableExecutor<>(engine);
-        return executor.execute(query, params, "ab");
+        RelationshipType relationshipType = getRelationshipType(type);
+        // held to commit so that concurrent merges on the same start node cannot both create
+        lock(startNode, LockPolicy.HOLD);
+        List<Relationship> rels = matchRelationshipsBetween(startNode, endNode, relationshipType);
+        if (rels.isEmpty()) {
+            rels.add(startNode.createRelationshipTo(endNode, relationshipType));
+        }
+        return rels;
     }
 
     @Override
     public Iterable<Relationship> purgeRelationshipSet(Node startNode, Node endNode, String type) {
-        if (startNode != null && endNode != null) {
-            String query;
-            if (type == null) {
-                query = "START a=node({a}), b=node({b}) MATCH (a)-[ab]->(b) DELETE ab";
-            } else {
-                query = "START a=node({a}), b=node({b}) MATCH (a)-[ab:`" + type + "`]->(b) DELETE ab";
+        for (Relationship rel : matchRelationshipSet(startNode, endNode, type)) {
+            rel.delete();
+        }
+        return new ArrayList<>();
+    }
+
+
+    // PRIVATE METHODS BELOW HERE
+
+    /**
+     * Add all nodes with the given label and property to the list supplied,
+     * creating one if none exist. A merge lock for the label, key and value
+     * is held until the transaction has been closed so that concurrent
+     * workers cannot both create the node.
+     *
+     * @return true if a node was created
+     */
+    private boolean mergeNode(Label label, String key, Object value, List<Node> nodes) {
+        acquireMergeLock(mergeStripe(label.name(), key, value));
+        try (ResourceIterator<Node> matches = database.findNodesByLabelAndProperty(label, key, value).iterator()) {
+            while (matches.hasNext()) {
+                nodes.add(matches.next());
             }
-            HashMap<String, Object> params = new HashMap<>(1);
-            params.put("a", startNode.getId());
-            params.put("b", endNode.getId());
-            engine.execute(query, params);
-        } else if (startNode != null) {
-            Iterable<Relationship> rels;
-            if (type == null) {
-                rels = startNode.getRelationships(Direction.OUTGOING);
-            } else {
-                rels = startNode.getRelationships(Direction.OUTGOING, getRelationshipType(type));
+        }
+        if (nodes.isEmpty()) {
+            Node node = database.createNode(label);  // LockPolicy.NONE
+            node.setProperty(key, value);
+            nodes.add(node);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private int mergeStripe(String label, String key, Object value) {
+        int valueHash = value instanceof Object[] ? Arrays.hashCode((Object[]) value) : value.hashCode();
+        return mergeLocks.stripe(31 * (31 * label.hashCode() + key.hashCode()) + valueHash);
+    }
+
+    private void acquireMergeLock(int stripe) {
+        ReentrantLock lock;
+        try {
+            lock = mergeLocks.tryLock(stripe, MERGE_LOCK_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            lock = null;
+        }
+        if (lock == null) {
+            throw new DeadlockDetectedException("Timed out waiting for merge lock");
+        }
+        heldMergeLocks.add(lock);
+    }
+
+    private Iterable<Relationship> getRelationships(Node node, Direction direction, RelationshipType type) {
+        if (type == null) {
+            return node.getRelationships(direction);
+        } else {
+            return node.getRelationships(direction, type);
+        }
+    }
+
+    /**
+     * Find the relationships from one node to another. Neo4j 2.0 cannot
+     * report the degree of a node, so the relationships of both nodes are
+     * scanned in step and the answer is taken from whichever is exhausted
+     * first, costing at most twice the lower degree of the two.
+     *
+     */
+    private List<Relationship> matchRelationshipsBetween(Node startNode, Node endNode, RelationshipType type) {
+        Iterator<Relationship> outgoing = getRelationships(startNode, Direction.OUTGOING, type).iterator();
+        Iterator<Relationship> incoming = getRelationships(endNode, Direction.INCOMING, type).iterator();
+        ArrayList<Relationship> fromStart = new ArrayList<>();
+        ArrayList<Relationship> fromEnd = new ArrayList<>();
+        while (true) {
+            if (!outgoing.hasNext()) {
+                return fromStart;
             }
-            for (Relationship rel : rels) {
-                rel.delete();
+            Relationship rel = outgoing.next();
+            if (rel.getEndNode().equals(endNode)) {
+                fromStart.add(rel);
             }
-        } else if (endNode != null) {
-            Iterable<Relationship> rels;
-            if (type == null) {
-                rels = endNode.getRelationships(Direction.INCOMING);
-            } else {
-                rels = endNode.getRelationships(Direction.INCOMING, getRelationshipType(type));
+            if (!incoming.hasNext()) {
+                return fromEnd;
             }
-            for (Relationship rel : rels) {
-                rel.delete();
+            rel = incoming.next();
+            if (rel.getStartNode().equals(startNode)) {
+                fromEnd.add(rel);
             }
-        } else {
-            throw new IllegalArgumentException("Either start or end nodes must be specified");
         }
-        return new ArrayList<>();
     }
 
-
-    // PRIVATE METHODS BELOW HERE
-
     private void addLabels(Node node, List labelNames) {
         for (Object labelName : labelNames) {
             if (labelName != null) {
@@ -275,70 +422,146 @@ public class Database implements DatabaseInterface {
         }
     }
 
+    /**
+     * Lock an entity according to the policy given. A held lock is released
+     * when the transaction ends.
+     *
+     */
+    private void lock(PropertyContainer entity, LockPolicy policy) {
+        if (policy == LockPolicy.HOLD) {
+            transaction.acquireWriteLock(entity);
+        }
+    }
+
     private void addProperties(PropertyContainer entity, Map properties) {
         for (Object key : properties.keySet()) {
-            String keyString = key.toString();
-            Object value = properties.get(key);
-            if (value instanceof List) {
-                List listValue = (List) value;
-                int listValueSize = listValue.size();
-                if (listValueSize >= 1) {
-                    Object firstItem = listValue.get(0);
-                    try {
-                        if (firstItem instanceof Boolean) {
-                            entity.setProperty(keyString, listValue.toArray(new Boolean[listValueSize]));
-                        } else if (firstItem instanceof Integer) {
-                            entity.setProperty(keyString, listValue.toArray(new Integer[listValueSize]));
-                        } else if (firstItem instanceof Long) {
-                            entity.setProperty(keyString, listValue.toArray(new Long[listValueSize]));
-                        } else if (firstItem instanceof Double) {
-                            entity.setProperty(keyString, listValue.toArray(new Double[listValueSize]));
-                        } else if (firstItem instanceof String) {
-                            entity.setProperty(keyString, listValue.toArray(new String[listValueSize]));
-                        } else {
-                            throw new ClassCastException("Cannot cast List property to a supported type");
-                        }
-                    } catch (ArrayStoreException ex) {
+            setProperty(entity, key.toString(), properties.get(key));
+        }
+    }
+
+    private void setProperty(PropertyContainer entity, String key, Object value) {
+        entity.setProperty(key, toPropertyValue(value));
+    }
+
+    /**
+     * Convert a value to the form in which it can be stored as a property,
+     * turning lists into arrays.
+     *
+     */
+    private Object toPropertyValue(Object value) {
+        if (value instanceof List) {
+            List listValue = (List) value;
+            int listValueSize = listValue.size();
+            if (listValueSize >= 1) {
+                Object firstItem = listValue.get(0);
+                try {
+                    if (firstItem instanceof Boolean) {
+                        return listValue.toArray(new Boolean[listValueSize]);
+                    } else if (firstItem instanceof Integer) {
+                        return listValue.toArray(new Integer[listValueSize]);
+                    } else if (firstItem instanceof Long) {
+                        return listValue.toArray(new Long[listValueSize]);
+                    } else if (firstItem instanceof Double) {
+                        return listValue.toArray(new Double[listValueSize]);
+                    } else if (firstItem instanceof String) {
+                        return listValue.toArray(new String[listValueSize]);
+                    } else {
                         throw new ClassCastException("Cannot cast List property to a supported type");
                     }
-                } else {
-                    entity.setProperty(keyString, new String[0]);
+                } catch (ArrayStoreException ex) {
+                    throw new ClassCastException("Cannot cast List property to a supported type");
                 }
             } else {
-                entity.setProperty(keyString, value);
+                return new String[0];
             }
+        } else {
+            return value;
         }
     }
 
-    private Label getLabel(String name) {
-        if (labelCache.containsKey(name)) {
-            return labelCache.get(name);
+    /**
+     * Compare a stored property value with one about to be written. Array
+     * values are compared item by item as Neo4j returns primitive arrays
+     * for values written as arrays of wrappers.
+     *
+     */
+    private static boolean propertyEquals(Object stored, Object value) {
+        if (stored == null || value == null) {
+            return stored == value;
+        } else if (stored.getClass().isArray() && value.getClass().isArray()) {
+            int length = Array.getLength(stored);
+            if (length != Array.getLength(value)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!Array.get(stored, i).equals(Array.get(value, i))) {
+                    return false;
+                }
+            }
+            return true;
         } else {
-            Label label = DynamicLabel.label(name);
-            labelCache.put(name, label);
-            return label;
+            return stored.equals(value);
         }
     }
 
+    private Label getLabel(String name) {
+        return tokens.getLabel(name);
+    }
+
     private RelationshipType getRelationshipType(String name) {
-        if (typeCache.containsKey(name)) {
-            return typeCache.get(name);
-        } else {
-            DynamicRelationshipType relationshipType = DynamicRelationshipType.withName(name);
-            typeCache.put(name, relationshipType);
-            return relationshipType;
-        }
+        return tokens.getRelationshipType(name);
     }
 
-    private void removeLabels(Node node) {
+    /**
+     * Bring the labels of a node into line with those given, only adding
+     * and removing those that differ.
+     *
+     */
+    private void replaceLabels(Node node, List labelNames) {
+        HashSet<String> wanted = new HashSet<>(labelNames.size());
+        for (Object labelName : labelNames) {
+            if (labelName != null) {
+                wanted.add(labelName.toString());
+            }
+        }
+        ArrayList<Label> existing = new ArrayList<>();
         for (Label label : node.getLabels()) {
-            node.removeLabel(label);
+            existing.add(label);
+        }
+        for (Label label : existing) {
+            if (!wanted.remove(label.name())) {
+                node.removeLabel(label);
+            }
+        }
+        for (String labelName : wanted) {
+            node.addLabel(getLabel(labelName));
         }
     }
 
-    private void removeProperties(PropertyContainer entity) {
-        for (Object key : entity.getPropertyKeys()) {
-            entity.removeProperty(key.toString());
+    /**
+     * Bring the properties of an entity into line with those given, only
+     * writing those that differ. A null value is treated as absent.
+     *
+     */
+    private void replaceProperties(PropertyContainer entity, Map properties) {
+        ArrayList<String> existing = new ArrayList<>();
+        for (String key : entity.getPropertyKeys()) {
+            existing.add(key);
+        }
+        for (String key : existing) {
+            if (properties.get(key) == null) {
+                entity.removeProperty(key);
+            }
+        }
+        for (Object key : properties.keySet()) {
+            Object value = properties.get(key);
+            if (value != null) {
+                String name = key.toString();
+                Object propertyValue = toPropertyValue(value);
+                if (!propertyEquals(entity.getProperty(name, null), propertyValue)) {
+                    entity.setProperty(name, propertyValue);
+                }
+            }
         }
     }
 
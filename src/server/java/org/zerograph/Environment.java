@@ -1,17 +1,25 @@
 package org.zerograph;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.zerograph.util.Log;
 import org.zerograph.util.Toolbox;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
 public class Environment {
 
     final private static String DEFAULT_HOST = "localhost";
     final private static int DEFAULT_PORT = 47470;
+    final private static String CONFIG_FILE = "zerograph.properties";
 
     final private static Environment instance = new Environment();
     final private static GraphDatabaseFactory factory = new GraphDatabaseFactory();
@@ -20,7 +28,9 @@ public class Environment {
     private int port;
     private File homeDirectory;
     private File dataDirectory;
+    private Properties config;
     private HashMap<Integer, GraphDatabaseService> databases;
+    private MemoryBudget memoryBudget;
 
     public static Environment getInstance() {
         return instance;
@@ -30,6 +40,7 @@ public class Environment {
         this.host = DEFAULT_HOST;
         this.port = DEFAULT_PORT;
         this.setDirectories();
+        this.loadConfig();
         this.databases = new HashMap<>();
     }
 
@@ -48,6 +59,27 @@ public class Environment {
         this.dataDirectory = getOrCreateDirectory(this.homeDirectory + "/" + "data");
     }
 
+    private void loadConfig() {
+        this.config = new Properties();
+        File file = new File(this.homeDirectory, CONFIG_FILE);
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                this.config.load(in);
+            } catch (IOException ex) {
+                Log.write("Cannot read config file " + file, Log.WARNING);
+            }
+        }
+        String level = this.config.getProperty("log.level");
+        if (level != null) {
+            try {
+                Log.setLevel(Log.Level.valueOf(level.trim().toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                Log.write("Invalid value for setting log.level: " + level, Log.WARNING);
+            }
+        }
+        this.memoryBudget = new MemoryBudget(getSetting(0, "memory.budget", 0) * MemoryBudget.MEGABYTE);
+    }
+
     private File getOrCreateDirectory(String path) {
         File directory = new File(path);
         if (!directory.isDirectory()) {
@@ -59,31 +91,141 @@ public class Environment {
         return directory;
     }
 
-    public synchronized GraphDatabaseService openDatabase(String host, int port) {
-        if (databases.containsKey(port)) {
-            return databases.get(port);
-        } else {
-            GraphDirectory directory = new GraphDirectory(host, port);
-            GraphDatabaseService database = factory.newEmbeddedDatabase(directory.getPath());
+    /**
+     * Make a database known to the memory budget ahead of opening it.
+     *
+     * @param host
+     * @param port
+     */
+    public void registerDatabase(String host, int port) {
+        memoryBudget.register(port, new GraphDirectory(host, port).getFile());
+    }
+
+    public GraphDatabaseService openDatabase(String host, int port) {
+        return openDatabase(host, port, 0.0);
+    }
+
+    /**
+     * Open a database, sizing its memory-mapped stores from its share of
+     * the server memory budget. The request rate, if known, lets busier
+     * graphs claim a larger share. The store itself is opened, and any
+     * recovery carried out, outside of the environment lock so that
+     * several graphs can be opened at once, but each port must only be
+     * opened by one thread at a time. If the database cannot be opened,
+     * its memory is returned to the budget.
+     *
+     * @param host
+     * @param port
+     * @param requestRate requests per second
+     * @return
+     */
+    public GraphDatabaseService openDatabase(String host, int port, double requestRate) {
+        GraphDirectory directory = new GraphDirectory(host, port);
+        Map<Setting<?>, String> settings;
+        synchronized (this) {
+            if (databases.containsKey(port)) {
+                return databases.get(port);
+            }
+            settings = memoryBudget.allocate(port, directory.getFile(), requestRate);
+        }
+        GraphDatabaseBuilder builder = factory.newEmbeddedDatabaseBuilder(directory.getPath());
+        for (Map.Entry<Setting<?>, String> setting : settings.entrySet()) {
+            builder.setConfig(setting.getKey(), setting.getValue());
+        }
+        GraphDatabaseService database;
+        try {
+            database = builder.newGraphDatabase();
+        } catch (RuntimeException ex) {
+            memoryBudget.release(port);
+            throw ex;
+        }
+        synchronized (this) {
             databases.put(port, database);
-            return database;
         }
+        return database;
     }
 
-    public synchronized void dropDatabase(String host, int port) {
-        if (databases.containsKey(port)) {
+    /**
+     * Shut down an open database, leaving its files in place. The database
+     * is shut down outside of the environment lock so that other graphs
+     * can be opened and closed meanwhile.
+     *
+     * @param port
+     */
+    public void closeDatabase(int port) {
+        GraphDatabaseService database;
+        synchronized (this) {
+            database = databases.remove(port);
+        }
+        if (database != null) {
+            database.shutdown();
+        }
+        memoryBudget.release(port);
+    }
+
+    /**
+     * Shut down a database if open and delete its files, if any. A graph
+     * that has never been used may have no files to delete.
+     *
+     * @param host
+     * @param port
+     */
+    public void dropDatabase(String host, int port) {
+        GraphDatabaseService database;
+        synchronized (this) {
+            database = databases.remove(port);
+        }
+        if (database != null) {
             Log.write("Shutting down database " + host + ":" + port);
-            databases.get(port).shutdown();
-            GraphDirectory directory = new GraphDirectory(host, port);
+            database.shutdown();
+        }
+        memoryBudget.unregister(port);
+        GraphDirectory directory = new GraphDirectory(host, port);
+        if (directory.exists()) {
             Log.write("Deleting database directory " + host + ":" + port);
             Toolbox.delete(directory.getFile());
-            databases.remove(port);
             Log.write("Database deleted");
-        } else {
-            throw new IllegalArgumentException("No such database");
         }
     }
 
+    /**
+     * Look up an integer setting from the config file, preferring a
+     * graph-specific value (e.g. "47471.workers.max") over a server-wide
+     * one (e.g. "workers.max").
+     *
+     * @param port
+     * @param key
+     * @param defaultValue
+     * @return
+     */
+    public int getSetting(int port, String key, int defaultValue) {
+        String value = config.getProperty(port + "." + key, config.getProperty(key));
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            Log.write("Invalid value for setting " + key + ": " + value, Log.WARNING);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Override a setting for the rest of this run, as if it had been given
+     * in the config file. Services read their settings as they start.
+     *
+     * @param key
+     * @param value
+     */
+    public void setSetting(String key, String value) {
+        config.setProperty(key, value);
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return this.memoryBudget;
+    }
+
     public String getHost() {
         return this.host;
     }
@@ -8,24 +8,34 @@ import org.zerograph.api.ResponderInterface;
 import org.zerograph.resources.*;
 import org.zerograph.resources.RelResource;
 import org.zerograph.util.Log;
+import org.zerograph.util.StripedLock;
+import org.zeromq.ZMsg;
 
-import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * A Graph service represents a database exposed over a server port.
+ * A Graph service represents a database exposed over a server port. The
+ * port is bound as soon as the service starts but the database itself is
+ * opened separately, either in the background at server startup or by the
+ * first worker to need it, so that a slow recovery does not hold up other
+ * graphs. A graph left idle for hibernation.idle_timeout milliseconds has
+ * its database closed again until the next request arrives.
+ *
+ * The database is opened under a lock of its own rather than the Graph
+ * monitor, which is also taken by the service as it starts, so that
+ * neither the service nor readers of the graph's details wait on a
+ * recovery.
  *
  */
 public class Graph extends Service implements GraphInterface {
 
     final static private HashMap<String, Graph> instances = new HashMap<>(1);
 
-    private ArrayList<GraphWorker> workers;
-    private ArrayList<Thread> threads;
-
     public static synchronized Graph get(String host, int port) {
         String key = Graph.key(host, port);
         return instances.get(key);
@@ -66,42 +76,214 @@ public class Graph extends Service implements GraphInterface {
         return graphs;
     }
 
-    final private GraphDatabaseService database;
+    final private CursorSet cursors;
+    final private StripedLock mergeLocks;
+    final private TokenCache tokens;
+
+    final private ReentrantLock opening;
+
+    private volatile GraphDatabaseService database;
+    private volatile CypherEngine engine;
+    private volatile boolean stopped;
+    private Future<?> startup;  // guarded by opening
 
     public Graph(String host, int port) {
         super(host, port);
-        this.database = getEnvironment().openDatabase(host, port);
-        this.workers = new ArrayList<>(WORKER_COUNT);
-        this.threads = new ArrayList<>(WORKER_COUNT);
+        // create the directory now so that the graph can be found before
+        // its database is first opened
+        new GraphDirectory(host, port).getFile().mkdirs();
+        getEnvironment().registerDatabase(host, port);
+        this.mergeLocks = new StripedLock();
+        this.tokens = new TokenCache(getEnvironment().getSetting(port, "tokens.cache_size", TokenCache.DEFAULT_SIZE));
+        this.cursors = new CursorSet(getEnvironment().getSetting(port, "cursors.idle_timeout", CursorSet.DEFAULT_IDLE_TIMEOUT));
+        this.opening = new ReentrantLock();
     }
 
+    /**
+     * Return the database for this graph, opening it if necessary. The
+     * request rate seen so far is used to weight its share of the server
+     * memory budget.
+     *
+     */
     public GraphDatabaseService getDatabase() {
-        return this.database;
+        GraphDatabaseService database = this.database;
+        if (database != null) {
+            return database;
+        }
+        opening.lock();
+        try {
+            if (this.database == null) {
+                if (stopped) {
+                    throw new IllegalStateException("Graph " + getHost() + ":" + getPort() + " has been stopped");
+                }
+                Log.write("Opening database " + getHost() + ":" + getPort());
+                Metrics metrics = getMetrics();
+                double requestRate = 1000.0 * metrics.getRequestCount() / Math.max(1, metrics.getUptime());
+                long start = System.nanoTime();
+                database = getEnvironment().openDatabase(getHost(), getPort(), requestRate);
+                this.engine = new CypherEngine(database);
+                this.database = database;
+                long openTime = System.nanoTime() - start;
+                metrics.recordOpen(openTime);
+                Log.write("Opened database " + getHost() + ":" + getPort() + " in " + openTime / 1000000 + " ms");
+            }
+            return this.database;
+        } finally {
+            opening.unlock();
+        }
+    }
+
+    /**
+     * Open the database in the background, ahead of the first request.
+     * The task does nothing if the graph is stopped before it runs, and is
+     * cancelled if it has not yet started.
+     *
+     * @param executor
+     */
+    public void openInBackground(ExecutorService executor) {
+        opening.lock();
+        try {
+            if (stopped) {
+                return;
+            }
+            startup = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Thread.currentThread().setName(getPort() + "/opening");
+                    opening.lock();
+                    try {
+                        if (!stopped) {
+                            getDatabase();
+                        }
+                    } catch (RuntimeException ex) {
+                        Log.write("Cannot open database " + getHost() + ":" + getPort() +
+                                " (" + ex.getMessage() + ")", Log.ERROR);
+                    } finally {
+                        opening.unlock();
+                    }
+                }
+            });
+        } finally {
+            opening.unlock();
+        }
+    }
+
+    /**
+     * Return the Cypher engine for this graph, or null if the database is
+     * not open.
+     *
+     */
+    public CypherEngine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Only read-only batches are prefetched, so that a batch holding write
+     * locks is never left queued behind a long batch on a busy worker.
+     *
+     */
+    @Override
+    protected boolean canPrefetch(ZMsg batch) {
+        return GraphWorker.isReadOnly(batch);
     }
 
     @Override
-    public void startWorkers() {
-        Log.write("Starting workers");
-        for(int i = 0; i < WORKER_COUNT; i++) {
-            GraphWorker worker = new GraphWorker(this);
-            Thread thread = new Thread(worker);
-            String uuid = worker.getUUID().toString();
-            thread.setName(getPort() + "/" + uuid.substring(uuid.length() - 7));
-            workers.add(worker);
-            threads.add(thread);
-            thread.start();
+    protected boolean isOpen() {
+        return this.database != null;
+    }
+
+    /**
+     * Close the database once all workers have been stopped, releasing its
+     * memory until it is next needed. Open cursors are closed with it. A
+     * database still being opened is left alone rather than waited for.
+     *
+     */
+    @Override
+    protected void hibernate() {
+        if (opening.tryLock()) {
+            try {
+                if (this.database != null) {
+                    Log.write("Hibernating database " + getHost() + ":" + getPort());
+                    cursors.closeAll();
+                    this.database = null;
+                    this.engine = null;
+                    getEnvironment().closeDatabase(getPort());
+                }
+            } finally {
+                opening.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stop the service, first making sure that the database will not be
+     * opened again in the background. A database already being opened is
+     * waited for, so that it can then be closed or dropped, and open
+     * cursors are closed once the workers have stopped.
+     *
+     */
+    @Override
+    public void stop() {
+        opening.lock();
+        try {
+            stopped = true;
+            if (startup != null) {
+                startup.cancel(false);
+            }
+        } finally {
+            opening.unlock();
+        }
+        super.stop();
+        cursors.closeAll();
+    }
+
+    /**
+     * Close the database of a stopped graph, leaving its files in place.
+     * A database still being opened is waited for.
+     *
+     */
+    public void close() {
+        opening.lock();
+        try {
+            if (this.database != null) {
+                Log.write("Closing database " + getHost() + ":" + getPort());
+                this.database = null;
+                this.engine = null;
+                getEnvironment().closeDatabase(getPort());
+            }
+        } finally {
+            opening.unlock();
         }
     }
 
+    public CursorSet getCursors() {
+        return this.cursors;
+    }
+
+    public StripedLock getMergeLocks() {
+        return this.mergeLocks;
+    }
+
+    public TokenCache getTokens() {
+        return this.tokens;
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new GraphWorker(this);
+    }
+
     @Override
     public ResourceSet createResourceSet(ResponderInterface responder) {
         ResourceSet resourceSet = new ResourceSet();
         resourceSet.add(new GraphResource(responder));
-        resourceSet.add(new CypherResource(responder));
+        resourceSet.add(new MetricsResource(responder, getMetrics()));
+        resourceSet.add(new CypherResource(responder, cursors));
         resourceSet.add(new NodeResource(responder));
-        resourceSet.add(new NodeSetResource(responder));
+        resourceSet.add(new NodeSetResource(responder, cursors,
+                getEnvironment().getSetting(getPort(), "nodes.max_create_count", NodeSetResource.DEFAULT_MAX_CREATE_COUNT)));
         resourceSet.add(new RelResource(responder));
-        resourceSet.add(new RelSetResource(responder));
+        resourceSet.add(new RelSetResource(responder, cursors));
         return resourceSet;
     }
 
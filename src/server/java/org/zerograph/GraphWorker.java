@@ -3,20 +3,45 @@ package org.zerograph;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionFailureException;
+import org.neo4j.kernel.DeadlockDetectedException;
 import org.zerograph.except.ClientError;
 import org.zerograph.except.ServerError;
 import org.zerograph.util.Log;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
 import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
 
 public class GraphWorker extends Worker<Graph> {
 
-    final private GraphDatabaseService database;
+    final public static int DEFAULT_BULK_SIZE = 10000;
+
+    final private static byte[] ACCEPT = "ACCEPT ".getBytes(StandardCharsets.US_ASCII);
+    final private static String GET = "GET";
+    final private static String PATCH = "PATCH";
+    final private static String NODE_SET = "NodeSet";
+
+    final private static byte[] BULK = "BULK".getBytes(StandardCharsets.US_ASCII);
+    final private static byte[] GET_LINE = "GET ".getBytes(StandardCharsets.US_ASCII);
+
+    final private Graph graph;
+    final private int defaultBulkSize;
+
+    private GraphDatabaseService database;
+    private Database context;
+
+    private int bulkSize;
+    private boolean readOnly;
 
     public GraphWorker(Graph graph) {
         super(graph);
-        this.database = graph.getDatabase();
+        this.graph = graph;
+        this.defaultBulkSize = graph.getEnvironment().getSetting(graph.getPort(), "transactions.bulk_size", DEFAULT_BULK_SIZE);
     }
 
     public GraphDatabaseService getDatabase() {
@@ -25,48 +50,323 @@ public class GraphWorker extends Worker<Graph> {
 
     @Override
     public void run() {
-        while (true) {
+        boolean busy = false;
+        // open the database (if not already open) on this thread rather
+        // than holding up the service
+        try {
+            this.database = graph.getDatabase();
+        } catch (RuntimeException ex) {
+            // the graph was stopped as this worker started, or cannot be opened
+            Log.write("Cannot start worker (" + ex.getMessage() + ")", Log.WARNING);
             try {
-                // receive request batch
-                ArrayList<Request> requests = new ArrayList<>();
-                boolean more = true;
-                while (more) {
-                    String frame = socket.recvStr();
-                    for (String line : frame.split("\\r|\\n|\\r\\n")) {
-                        if (line.length() > 0) {
-                            Log.write(line, Log.RECEIVE);
-                            requests.add(Request.parse(line));
-                        }
+                failed(ex.getMessage());
+            } catch (ZMQException ignored) {
+                // the service is already shutting down
+            } finally {
+                responder.close();
+            }
+            return;
+        }
+        this.context = new Database(database, graph.getEngine(), graph.getMergeLocks(), graph.getTokens());
+        metrics.workerStarted();
+        ready();
+        try {
+            while (true) {
+                try {
+                    // receive request batch
+                    if (!receiveEnvelope()) {
+                        break;
                     }
-                    more = socket.hasReceiveMore();
+                    metrics.batchStarted();
+                    busy = true;
+                    ArrayList<byte[]> frames = new ArrayList<>();
+                    boolean more = true;
+                    while (more) {
+                        frames.add(socket.recv());
+                        more = socket.hasReceiveMore();
+                    }
+                    sendEnvelope();
+                    long parseStartTime = System.nanoTime();
+                    ArrayList<Request> requests = parseRequests(frames);
+                    metrics.recordBatch(requests.size(), System.nanoTime() - parseStartTime);
+                    frames = null;  // release the raw batch before handling it
+                    // action requests
+                    if (readOnly) {
+                        handleReadOnly(requests);
+                    } else if (bulkSize > 0) {
+                        handleBulk(requests);
+                    } else {
+                        handleAll(requests);
+                    }
+                } catch (ZMQException ex) {
+                    int errorCode = ex.getErrorCode();
+                    if (errorCode == ZMQ.Error.ETERM.getCode()) {
+                        // shutting down
+                        break;
+                    } else {
+                        ex.printStackTrace(System.err);
+                        throw ex;
+                    }
+                } catch (IllegalArgumentException | ClientError | ServerError ex) {
+                    responder.sendError(ex);
+                } catch (DeadlockDetectedException | TransactionFailureException ex) {
+                    // the transaction has been rolled back, so the batch can be retried
+                    Log.write("Transaction failed: " + ex.getMessage(), Log.WARNING);
+                    responder.sendError(new ServerError(ex.getMessage(), ex));
+                } catch (RuntimeException ex) {
+                    // reply rather than let the worker die with the batch unanswered
+                    Log.write("Unexpected error: " + ex, Log.ERROR);
+                    responder.sendError(new ServerError(ex.toString(), ex));
+                }
+                responder.endResponseBatch();
+                metrics.batchEnded();
+                busy = false;
+            }
+        } finally {
+            if (busy) {
+                metrics.batchEnded();
+            }
+            metrics.workerStopped();
+            // always release the socket, or terminating the context would block
+            responder.close();
+        }
+    }
+
+    /**
+     * Handle a batch made up only of GET requests. A transaction is still
+     * required for reads but, as nothing has been written, it is closed
+     * without being committed.
+     *
+     */
+    private void handleReadOnly(ArrayList<Request> requests) throws ClientError, ServerError {
+        ArrayList<PropertyContainer> outputValues = new ArrayList<>(requests.size());
+        try (Transaction tx = database.beginTx()) {
+            context.setTransaction(tx);
+            for (Request request : requests) {
+                request.resolvePointers(outputValues);
+                outputValues.add(handle(request, context));
+            }
+        }
+    }
+
+    /**
+     * Handle all requests in the batch within a single transaction.
+     *
+     */
+    private void handleAll(ArrayList<Request> requests) throws ClientError, ServerError {
+        ArrayList<PropertyContainer> outputValues = new ArrayList<>(requests.size());
+        long commitStartTime;
+        Log.write("Beginning transaction");
+        try (Transaction tx = database.beginTx()) {
+            context.setTransaction(tx);
+            acquireMergeLocks(requests, 0, requests.size());
+            for (Request request : requests) {
+                request.resolvePointers(outputValues);
+                outputValues.add(handle(request, context));
+            }
+            tx.success();
+            commitStartTime = System.nanoTime();
+        } finally {
+            context.releaseMergeLocks();
+        }
+        metrics.recordCommit(System.nanoTime() - commitStartTime);
+        Log.write("Successfully completed transaction");
+    }
+
+    /**
+     * Handle the requests in the batch in a series of transactions, each
+     * committed after bulkSize requests. Output values are kept for the
+     * whole batch so that pointers can refer back to entities from earlier
+     * transactions. If a request fails, only the current transaction is
+     * rolled back.
+     *
+     */
+    private void handleBulk(ArrayList<Request> requests) throws ClientError, ServerError {
+        ArrayList<PropertyContainer> outputValues = new ArrayList<>(requests.size());
+        int size = requests.size();
+        int i = 0;
+        while (i < size) {
+            int end = Math.min(i + bulkSize, size);
+            long commitStartTime;
+            Log.write("Beginning transaction");
+            try (Transaction tx = database.beginTx()) {
+                context.setTransaction(tx);
+                acquireMergeLocks(requests, i, end);
+                for (; i < end; i++) {
+                    Request request = requests.set(i, null);  // release each request once handled
+                    request.resolvePointers(outputValues);
+                    outputValues.add(handle(request, context));
+                }
+                tx.success();
+                commitStartTime = System.nanoTime();
+            } finally {
+                context.releaseMergeLocks();
+            }
+            metrics.recordCommit(System.nanoTime() - commitStartTime);
+            Log.write("Successfully completed transaction");
+        }
+    }
+
+    /**
+     * Take the merge locks needed by the PATCH NodeSet requests from index
+     * start up to end, before any of them is handled. Taking them all at
+     * once, in stripe order and before the transaction holds any other
+     * locks, means that concurrent batches cannot deadlock over them. Any
+     * merge whose arguments are not known in advance, such as a pointer,
+     * takes its lock when handled instead.
+     *
+     */
+    private void acquireMergeLocks(List<Request> requests, int start, int end) {
+        ArrayList<Integer> stripes = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            Request request = requests.get(i);
+            if (!PATCH.equals(request.getMethod()) || !NODE_SET.equals(request.getResource())) {
+                continue;
+            }
+            Object label = request.getArgument("label", null);
+            Object key = request.getArgument("key", null);
+            if (!(label instanceof String) || !(key instanceof String)) {
+                continue;
+            }
+            Object values = request.getArgument("values", null);
+            if (values instanceof List) {
+                for (Object value : (List) values) {
+                    addMergeStripe(stripes, (String) label, (String) key, value);
                 }
-                // action requests
-                ArrayList<PropertyContainer> outputValues = new ArrayList<>(requests.size());
-                Log.write("Beginning transaction");
-                try (Transaction tx = database.beginTx()) {
-                    Database context = new Database(database, tx);  // TODO: construct higher up and just set tx here
-                    for (Request request : requests) {
-                        request.resolvePointers(outputValues);
-                        outputValues.add(handle(request, context));
+            } else {
+                addMergeStripe(stripes, (String) label, (String) key, request.getArgument("value", null));
+            }
+        }
+        if (!stripes.isEmpty()) {
+            int[] array = new int[stripes.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = stripes.get(i);
+            }
+            context.acquireMergeLocks(array);
+        }
+    }
+
+    private void addMergeStripe(List<Integer> stripes, String label, String key, Object value) {
+        if (value != null) {
+            try {
+                stripes.add(context.getMergeStripe(label, key, value));
+            } catch (ClassCastException | IllegalArgumentException ex) {
+                // left for the request itself to report
+            }
+        }
+    }
+
+    /**
+     * Scan the received frames for request lines, separated by any of CR,
+     * LF or CR LF, and parse each in place. The batch may begin with header
+     * lines: "ACCEPT <encoding>" selects the response encoding and
+     * "BULK [<size>]" commits a transaction after every <size> requests
+     * instead of handling the whole batch in one. A batch made up only of
+     * GET requests is marked as read-only.
+     *
+     */
+    private ArrayList<Request> parseRequests(ArrayList<byte[]> frames) throws ClientError {
+        ArrayList<Request> requests = new ArrayList<>();
+        String encoding = DEFAULT_ENCODING;
+        bulkSize = 0;
+        readOnly = true;
+        boolean header = true;
+        for (byte[] frame : frames) {
+            int start = 0;
+            for (int i = 0; i <= frame.length; i++) {
+                if (i == frame.length || frame[i] == '\r' || frame[i] == '\n') {
+                    int length = i - start;
+                    if (length > 0) {
+                        if (Log.isEnabled(Log.RECEIVE)) {
+                            Log.write(new String(frame, start, length, StandardCharsets.UTF_8), Log.RECEIVE);
+                        }
+                        if (header && startsWith(frame, start, length, ACCEPT)) {
+                            int offset = start + ACCEPT.length;
+                            encoding = new String(frame, offset, length - ACCEPT.length, StandardCharsets.US_ASCII).trim();
+                        } else if (header && startsWith(frame, start, length, BULK)) {
+                            int offset = start + BULK.length;
+                            bulkSize = parseBulkSize(new String(frame, offset, length - BULK.length, StandardCharsets.US_ASCII).trim());
+                            if (bulkSize <= 0) {
+                                beginResponseBatch(encoding);
+                                throw new ClientError("Bulk size must be a positive integer");
+                            }
+                        } else {
+                            if (header) {
+                                beginResponseBatch(encoding);
+                                header = false;
+                            }
+                            Request request = Request.parse(frame, start, length);
+                            readOnly = readOnly && GET.equals(request.getMethod());
+                            requests.add(request);
+                        }
                     }
-                    tx.success();
+                    start = i + 1;
                 }
-                Log.write("Successfully completed transaction");
-            } catch (ZMQException ex) {
-                int errorCode = ex.getErrorCode();
-                if (errorCode == 156384765) {
-                    // shutting down
-                    break;
-                } else {
-                    ex.printStackTrace(System.err);
-                    throw ex;
+            }
+        }
+        if (header) {
+            beginResponseBatch(encoding);
+        }
+        return requests;
+    }
+
+    private int parseBulkSize(String value) {
+        if (value.isEmpty()) {
+            return defaultBulkSize;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Check whether a client batch, as queued by the service, is made up
+     * only of GET requests. The frames are scanned only as far as the
+     * first line that is not a GET request or a header.
+     *
+     */
+    public static boolean isReadOnly(ZMsg batch) {
+        boolean envelope = true;
+        boolean header = true;
+        for (ZFrame frame : batch) {
+            byte[] data = frame.getData();
+            if (envelope) {
+                // skip the client address, up to the empty delimiter
+                envelope = data.length > 0;
+                continue;
+            }
+            int start = 0;
+            for (int i = 0; i <= data.length; i++) {
+                if (i == data.length || data[i] == '\r' || data[i] == '\n') {
+                    int length = i - start;
+                    if (length > 0) {
+                        if (header && (startsWith(data, start, length, ACCEPT) || startsWith(data, start, length, BULK))) {
+                            // header line
+                        } else if (startsWith(data, start, length, GET_LINE)) {
+                            header = false;
+                        } else {
+                            return false;
+                        }
+                    }
+                    start = i + 1;
                 }
-            } catch (IllegalArgumentException | ClientError | ServerError ex) {
-                responder.sendError(ex);
             }
-            responder.endResponseBatch();
         }
-        responder.close();
+        return !envelope;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
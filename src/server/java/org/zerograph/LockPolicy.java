@@ -0,0 +1,25 @@
+package org.zerograph;
+
+/**
+ * The explicit locking applied to an entity by a Database operation, in
+ * addition to the write locks that Neo4j takes itself on modification.
+ *
+ */
+public enum LockPolicy {
+
+    /**
+     * No explicit lock. Used for entities created within the current
+     * transaction, which no other transaction can see, and for updates
+     * that add to or delete an entity without reading it first, which the
+     * locks Neo4j takes itself already cover.
+     */
+    NONE,
+
+    /**
+     * A write lock taken before the operation begins and held until the
+     * transaction ends. Used where existing state is read and replaced,
+     * so that no other transaction can interleave with the replacement.
+     */
+    HOLD
+
+}
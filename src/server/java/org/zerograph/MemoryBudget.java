@@ -0,0 +1,182 @@
+package org.zerograph;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.zerograph.util.Log;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Divides a fixed amount of memory-mapped store memory between the graphs
+ * open on this server, so that many graphs on one host do not each size
+ * their buffers as if they were alone.
+ *
+ * Each graph is weighted by the size of its store files, scaled up by its
+ * request rate, and is offered its weighted share of the whole budget,
+ * but never more than its files could use. Graphs are registered as their
+ * services start, before any database is opened, so the first graph to
+ * open is not offered memory that the others will need. A small minimum
+ * is given to every graph, but only while unclaimed memory remains: the
+ * total allocated never exceeds the budget, and a graph opened once it is
+ * exhausted runs with no mapped memory at all. Within a graph, memory is
+ * split between stores in proportion to their file sizes. Neo4j fixes
+ * mapped memory when a database is opened, so shares are recalculated as
+ * graphs are opened and dropped but a graph only takes up its new share
+ * the next time it is opened. A hibernated graph keeps its weight, so its
+ * share is not handed out to the graphs still open.
+ *
+ * Rarely used graphs are also given a weak object cache, which gives way
+ * to other graphs under memory pressure.
+ */
+public class MemoryBudget {
+
+    final public static long MEGABYTE = 1024 * 1024;
+
+    final public static long MIN_STORE_MEMORY = MEGABYTE;
+    final public static long MIN_GRAPH_MEMORY = 5 * MIN_STORE_MEMORY;
+    final public static double HEADROOM = 1.25;  // allow stores to grow
+    final public static double BUSY_RATE = 1.0;  // requests per second
+
+    final private static String[] STORE_FILES = {
+            "neostore.nodestore.db",
+            "neostore.relationshipstore.db",
+            "neostore.propertystore.db",
+            "neostore.propertystore.db.strings",
+            "neostore.propertystore.db.arrays",
+    };
+    final private static Setting<?>[] STORE_SETTINGS = {
+            GraphDatabaseSettings.nodestore_mapped_memory_size,
+            GraphDatabaseSettings.relationshipstore_mapped_memory_size,
+            GraphDatabaseSettings.nodestore_propertystore_mapped_memory_size,
+            GraphDatabaseSettings.strings_mapped_memory_size,
+            GraphDatabaseSettings.arrays_mapped_memory_size,
+    };
+
+    final private long budget;
+    final private HashMap<Integer, Long> allocations;
+    final private HashMap<Integer, Double> weights;
+
+    /**
+     * Create a budget of a number of bytes, or unlimited if zero, in which
+     * case the Neo4j defaults are left in place.
+     *
+     * @param budget
+     */
+    public MemoryBudget(long budget) {
+        this.budget = budget;
+        this.allocations = new HashMap<>();
+        this.weights = new HashMap<>();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getAllocated() {
+        long allocated = 0;
+        for (long allocation : allocations.values()) {
+            allocated += allocation;
+        }
+        return allocated;
+    }
+
+    public synchronized long getAllocation(int port) {
+        Long allocation = allocations.get(port);
+        return allocation == null ? 0 : allocation;
+    }
+
+    /**
+     * Make a graph known to the budget before its database is opened, so
+     * that its share is set aside from those offered to other graphs.
+     *
+     * @param port
+     * @param directory the store directory, which may not yet exist
+     */
+    public synchronized void register(int port, File directory) {
+        if (budget > 0 && !weights.containsKey(port)) {
+            weights.put(port, (double) getDemand(getStoreSizes(directory)));
+        }
+    }
+
+    /**
+     * Reserve memory for a graph about to be opened and return the database
+     * settings that apply it.
+     *
+     * @param port
+     * @param directory the store directory, which may not yet exist
+     * @param requestRate recent requests per second, if known
+     * @return
+     */
+    public synchronized Map<Setting<?>, String> allocate(int port, File directory, double requestRate) {
+        HashMap<Setting<?>, String> config = new HashMap<>();
+        if (budget <= 0) {
+            return config;
+        }
+        release(port);
+        long[] sizes = getStoreSizes(directory);
+        long demand = getDemand(sizes);
+        double weight = demand * (1.0 + requestRate);
+        weights.put(port, weight);
+        double totalWeight = 0.0;
+        for (double w : weights.values()) {
+            totalWeight += w;
+        }
+        long share = (long) (budget * weight / totalWeight);
+        long available = budget - getAllocated();
+        long allocation = Math.min(available, Math.max(MIN_GRAPH_MEMORY, Math.min(demand, share)));
+        allocations.put(port, allocation);
+        for (int i = 0; i < STORE_FILES.length; i++) {
+            config.put(STORE_SETTINGS[i], Long.toString(allocation * sizes[i] / demand));
+        }
+        config.put(GraphDatabaseSettings.cache_type, requestRate >= BUSY_RATE ? "soft" : "weak");
+        if (allocation < MIN_GRAPH_MEMORY) {
+            Log.write(String.format("Memory budget exhausted, allocated %d MB of mapped memory to port %d",
+                    allocation / MEGABYTE, port), Log.WARNING);
+        } else {
+            Log.write(String.format("Allocated %d MB of mapped memory to port %d (%d of %d MB allocated)",
+                    allocation / MEGABYTE, port, getAllocated() / MEGABYTE, budget / MEGABYTE));
+        }
+        return config;
+    }
+
+    private static long[] getStoreSizes(File directory) {
+        long[] sizes = new long[STORE_FILES.length];
+        for (int i = 0; i < STORE_FILES.length; i++) {
+            sizes[i] = Math.max(MIN_STORE_MEMORY, (long) (new File(directory, STORE_FILES[i]).length() * HEADROOM));
+        }
+        return sizes;
+    }
+
+    private static long getDemand(long[] sizes) {
+        long demand = 0;
+        for (long size : sizes) {
+            demand += size;
+        }
+        return demand;
+    }
+
+    /**
+     * Return the memory held by a graph that has been closed to the budget.
+     * The graph stays registered, so that its share is still set aside
+     * for when it is next opened.
+     *
+     * @param port
+     */
+    public synchronized void release(int port) {
+        allocations.remove(port);
+    }
+
+    /**
+     * Forget a graph that has been dropped, returning both its memory and
+     * its share to the budget.
+     *
+     * @param port
+     */
+    public synchronized void unregister(int port) {
+        allocations.remove(port);
+        weights.remove(port);
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.zerograph;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.zerograph.api.ResponderInterface;
+import org.zerograph.except.MalformedResponse;
+import org.zerograph.util.MessagePack;
+import org.zeromq.ZMQ;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary alternative to the YAML Responder. Each response is written as a
+ * stream of MessagePack records, each a two-item array of a section code
+ * (as defined by Responder) and its value:
+ *
+ *   [HEAD, {…}]
+ *   [BODY, …]  or  [START_BODY_LIST, nil] [BODY_ITEM, …]… [END_BODY_LIST, nil]
+ *   [FOOT, {…}]
+ *   [END, nil]
+ *
+ * An error is written as [ERROR, "message"].
+ */
+public class MessagePackResponder implements ResponderInterface {
+
+    final private ZMQ.Socket socket;
+    final private int frameSize;
+    final private MessagePack packer;
+
+    private int state;
+    private long serializationTime = 0;
+
+    public MessagePackResponder(ZMQ.Socket socket, int frameSize) {
+        this.socket = socket;
+        this.frameSize = frameSize;
+        this.packer = new MessagePack(frameSize > 0 ? frameSize + 1024 : 1024);
+    }
+
+    public ZMQ.Socket getSocket() {
+        return this.socket;
+    }
+
+    @Override
+    public void beginResponseBatch() {
+        packer.clear();
+    }
+
+    @Override
+    public void beginResponse() throws MalformedResponse {
+        state = Responder.BEGIN;
+    }
+
+    @Override
+    public void sendHead(Map<String, Object> data) throws MalformedResponse {
+        if (state == Responder.BEGIN) {
+            send(Responder.HEAD, data);
+            state = Responder.HEAD;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void sendBody(Object data) throws MalformedResponse {
+        if (state == Responder.BEGIN || state == Responder.HEAD) {
+            send(Responder.BODY, data);
+            state = Responder.BODY;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void startBodyList() throws MalformedResponse {
+        if (state == Responder.BEGIN || state == Responder.HEAD) {
+            send(Responder.START_BODY_LIST, null);
+            state = Responder.START_BODY_LIST;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void sendBodyItem(Object data) throws MalformedResponse {
+        if (state == Responder.START_BODY_LIST || state == Responder.BODY_ITEM) {
+            send(Responder.BODY_ITEM, data);
+            state = Responder.BODY_ITEM;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void sendBodyRow(Map<String, Object> row, List<String> columns) throws MalformedResponse {
+        if (state == Responder.START_BODY_LIST || state == Responder.BODY_ITEM) {
+            int start = packer.size();
+            long startTime = System.nanoTime();
+            try {
+                packer.packArrayHeader(2);
+                packer.packLong(Responder.BODY_ITEM);
+                packer.packArrayHeader(columns.size());
+                for (String column : columns) {
+                    packer.pack(row.get(column));
+                }
+            } catch (IllegalArgumentException ex) {
+                packer.truncate(start);
+                throw ex;
+            }
+            serializationTime += System.nanoTime() - startTime;
+            state = Responder.BODY_ITEM;
+            if (packer.size() >= frameSize) {
+                flush();
+            }
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void endBodyList() throws MalformedResponse {
+        if (state == Responder.START_BODY_LIST || state == Responder.BODY_ITEM) {
+            send(Responder.END_BODY_LIST, null);
+            state = Responder.END_BODY_LIST;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void sendFoot(Map<String, Object> data) throws MalformedResponse {
+        if (state == Responder.BODY || state == Responder.END_BODY_LIST) {
+            send(Responder.FOOT, data);
+            state = Responder.FOOT;
+        } else {
+            throw new MalformedResponse();
+        }
+    }
+
+    @Override
+    public void sendError(Exception ex) {
+        send(Responder.ERROR, ex.getMessage());
+        state = Responder.ERROR;
+    }
+
+    @Override
+    public void endResponse() {
+        send(Responder.END, null);
+        state = Responder.END;
+    }
+
+    @Override
+    public void endResponseBatch() {
+        flush();
+        socket.send("");
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    @Override
+    public long getSerializationTime() {
+        return serializationTime;
+    }
+
+    /**
+     * Write one record. If the value cannot be packed, anything already
+     * written for the record is discarded so that the stream stays intact
+     * for the error record that follows.
+     *
+     */
+    private void send(int code, Object data) {
+        int start = packer.size();
+        long startTime = System.nanoTime();
+        try {
+            packer.packArrayHeader(2);
+            packer.packLong(code);
+            packer.pack(data);
+        } catch (IllegalArgumentException ex) {
+            packer.truncate(start);
+            throw ex;
+        }
+        serializationTime += System.nanoTime() - startTime;
+        if (packer.size() >= frameSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (packer.size() > 0) {
+            long startTime = System.nanoTime();
+            socket.sendMore(packer.toByteArray());
+            packer.clear();
+            serializationTime += System.nanoTime() - startTime;
+        }
+    }
+
+    @Override
+    public Node sendNodes(Iterable<Node> result) throws MalformedResponse {
+        Node first = null;
+        startBodyList();
+        for (Node node : result) {
+            if (first == null) {
+                first = node;
+            }
+            sendBodyItem(node);
+        }
+        endBodyList();
+        return first;
+    }
+
+    @Override
+    public Relationship sendRelationships(Iterable<Relationship> result) throws MalformedResponse {
+        Relationship first = null;
+        startBodyList();
+        for (Relationship rel : result) {
+            if (first == null) {
+                first = rel;
+            }
+            sendBodyItem(rel);
+        }
+        endBodyList();
+        return first;
+    }
+
+}
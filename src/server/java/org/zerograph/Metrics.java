@@ -0,0 +1,281 @@
+package org.zerograph;
+
+import org.zerograph.util.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and throughput figures for a service, shared by all of its
+ * workers. Each request is timed per resource and method, split into the
+ * time spent executing it and the time spent serialising and sending its
+ * response; requests that fail are counted instead. Each batch records its size and the time taken to parse it and
+ * to commit its transactions. All times are held in microseconds.
+ *
+ * Worker time is kept as a running sum in which each worker subtracts the
+ * clock when it starts (or becomes busy) and adds it back when it stops
+ * (or becomes idle), so that the total to date is that sum plus the number
+ * of workers still running multiplied by the current clock.
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Timings for one method of one resource, and a count of the requests
+     * that failed.
+     *
+     */
+    public static class RequestMetrics {
+
+        final private Histogram execution = new Histogram();
+        final private Histogram serialization = new Histogram();
+        final private AtomicLong errors = new AtomicLong();
+
+        public void record(long executionTime, long serializationTime) {
+            execution.record(executionTime / 1000);
+            serialization.record(serializationTime / 1000);
+        }
+
+        public void recordError() {
+            errors.incrementAndGet();
+        }
+
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        public Histogram getExecution() {
+            return execution;
+        }
+
+        public Histogram getSerialization() {
+            return serialization;
+        }
+
+    }
+
+    final private long startTime;
+
+    final private ConcurrentHashMap<String, ConcurrentHashMap<String, RequestMetrics>> requests;
+    final private Histogram batchSize;
+    final private Histogram parseTime;
+    final private Histogram commitTime;
+    final private Histogram openTime;
+    private volatile long lastOpenTime;
+
+    final private AtomicInteger workers;
+    final private AtomicInteger busyWorkers;
+    final private AtomicLong workerTime;  // nanoseconds
+    final private AtomicLong busyTime;    // nanoseconds
+
+    public Metrics() {
+        this.startTime = System.currentTimeMillis();
+        this.requests = new ConcurrentHashMap<>();
+        this.batchSize = new Histogram();
+        this.parseTime = new Histogram();
+        this.commitTime = new Histogram();
+        this.openTime = new Histogram();
+        this.workers = new AtomicInteger();
+        this.busyWorkers = new AtomicInteger();
+        this.workerTime = new AtomicLong();
+        this.busyTime = new AtomicLong();
+    }
+
+    /**
+     * Find the timings for a method of a resource, creating them if this
+     * is the first such request.
+     *
+     */
+    public RequestMetrics getRequestMetrics(String resource, String method) {
+        ConcurrentHashMap<String, RequestMetrics> methods = requests.get(resource);
+        if (methods == null) {
+            methods = new ConcurrentHashMap<>();
+            ConcurrentHashMap<String, RequestMetrics> existing = requests.putIfAbsent(resource, methods);
+            if (existing != null) {
+                methods = existing;
+            }
+        }
+        RequestMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            metrics = new RequestMetrics();
+            RequestMetrics existing = methods.putIfAbsent(method, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    public void workerStarted() {
+        workerTime.addAndGet(-System.nanoTime());
+        workers.incrementAndGet();
+    }
+
+    public void workerStopped() {
+        workers.decrementAndGet();
+        workerTime.addAndGet(System.nanoTime());
+    }
+
+    public void batchStarted() {
+        busyTime.addAndGet(-System.nanoTime());
+        busyWorkers.incrementAndGet();
+    }
+
+    public void batchEnded() {
+        busyWorkers.decrementAndGet();
+        busyTime.addAndGet(System.nanoTime());
+    }
+
+    public void recordBatch(int size, long parseNanos) {
+        batchSize.record(size);
+        parseTime.record(parseNanos / 1000);
+    }
+
+    public void recordCommit(long commitNanos) {
+        commitTime.record(commitNanos / 1000);
+    }
+
+    /**
+     * Record the time taken to open the database, including any recovery
+     * needed after an unclean shutdown.
+     *
+     */
+    public void recordOpen(long openNanos) {
+        lastOpenTime = openNanos / 1000;
+        openTime.record(lastOpenTime);
+    }
+
+    @Override
+    public long getUptime() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public long getLastOpenTime() {
+        return lastOpenTime;
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return workers.get();
+    }
+
+    @Override
+    public int getBusyWorkers() {
+        return busyWorkers.get();
+    }
+
+    /**
+     * The fraction of worker time to date spent handling batches.
+     *
+     */
+    @Override
+    public double getWorkerUtilisation() {
+        long now = System.nanoTime();
+        long busy = busyTime.get() + busyWorkers.get() * now;
+        long total = workerTime.get() + workers.get() * now;
+        return total <= 0 ? 0.0 : Math.min(1.0, (double) busy / total);
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchSize.getCount();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return batchSize.getTotal();
+    }
+
+    @Override
+    public double getMeanBatchSize() {
+        return batchSize.getMean();
+    }
+
+    @Override
+    public long getParseTime99() {
+        return parseTime.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getCommitTime99() {
+        return commitTime.getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public Map<String, Long> getExecutionTime99() {
+        TreeMap<String, Long> times = new TreeMap<>();
+        for (Map.Entry<String, RequestMetrics> entry : getAllRequestMetrics().entrySet()) {
+            times.put(entry.getKey(), entry.getValue().getExecution().getValueAtPercentile(99.0));
+        }
+        return times;
+    }
+
+    @Override
+    public Map<String, Long> getSerializationTime99() {
+        TreeMap<String, Long> times = new TreeMap<>();
+        for (Map.Entry<String, RequestMetrics> entry : getAllRequestMetrics().entrySet()) {
+            times.put(entry.getKey(), entry.getValue().getSerialization().getValueAtPercentile(99.0));
+        }
+        return times;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        TreeMap<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, RequestMetrics> entry : getAllRequestMetrics().entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getErrorCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Summarise all figures for a response.
+     *
+     */
+    public Map<String, Object> toMap() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+        map.put("uptime", getUptime());
+        LinkedHashMap<String, Object> workerMap = new LinkedHashMap<>();
+        workerMap.put("count", getWorkerCount());
+        workerMap.put("busy", getBusyWorkers());
+        workerMap.put("utilisation", getWorkerUtilisation());
+        map.put("workers", workerMap);
+        LinkedHashMap<String, Object> batchMap = new LinkedHashMap<>();
+        batchMap.put("size", batchSize.toMap());
+        batchMap.put("parse", parseTime.toMap());
+        batchMap.put("commit", commitTime.toMap());
+        map.put("batches", batchMap);
+        LinkedHashMap<String, Object> databaseMap = new LinkedHashMap<>();
+        databaseMap.put("open", openTime.toMap());
+        map.put("database", databaseMap);
+        LinkedHashMap<String, Object> requestMap = new LinkedHashMap<>();
+        for (Map.Entry<String, RequestMetrics> entry : getAllRequestMetrics().entrySet()) {
+            LinkedHashMap<String, Object> timings = new LinkedHashMap<>();
+            timings.put("execution", entry.getValue().getExecution().toMap());
+            timings.put("serialization", entry.getValue().getSerialization().toMap());
+            timings.put("errors", entry.getValue().getErrorCount());
+            requestMap.put(entry.getKey(), timings);
+        }
+        map.put("requests", requestMap);
+        return map;
+    }
+
+    /**
+     * All request timings keyed by "METHOD Resource", in name order.
+     *
+     */
+    private TreeMap<String, RequestMetrics> getAllRequestMetrics() {
+        TreeMap<String, RequestMetrics> all = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentHashMap<String, RequestMetrics>> resource : requests.entrySet()) {
+            for (Map.Entry<String, RequestMetrics> method : resource.getValue().entrySet()) {
+                all.put(method.getKey() + " " + resource.getKey(), method.getValue());
+            }
+        }
+        return all;
+    }
+
+}
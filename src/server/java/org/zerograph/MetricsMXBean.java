@@ -0,0 +1,38 @@
+package org.zerograph;
+
+import java.util.Map;
+
+/**
+ * JMX view of the Metrics of a service, registered as
+ * "org.zerograph:type=Metrics,port=<port>". Times are in microseconds.
+ *
+ */
+public interface MetricsMXBean {
+
+    public long getUptime();
+
+    public long getLastOpenTime();
+
+    public int getWorkerCount();
+
+    public int getBusyWorkers();
+
+    public double getWorkerUtilisation();
+
+    public long getBatchCount();
+
+    public long getRequestCount();
+
+    public double getMeanBatchSize();
+
+    public long getParseTime99();
+
+    public long getCommitTime99();
+
+    public Map<String, Long> getExecutionTime99();
+
+    public Map<String, Long> getSerializationTime99();
+
+    public Map<String, Long> getErrorCounts();
+
+}
@@ -1,5 +1,7 @@
 package org.zerograph;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.type.TypeReference;
@@ -9,6 +11,7 @@ import org.zerograph.except.ClientError;
 import org.zerograph.except.MalformedRequest;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,21 +22,82 @@ public class Request implements RequestInterface {
     final private static ObjectMapper MAPPER = new ObjectMapper();
     final private static ObjectWriter WRITER = MAPPER.writerWithType(JSON_OBJECT);
 
+    final private static JsonFactory FACTORY = MAPPER.getJsonFactory();
+
+    final private static String[] METHODS = {"GET", "SET", "PATCH", "CREATE", "DELETE", "EXECUTE"};
+    final private static byte[][] METHOD_BYTES = new byte[METHODS.length][];
+
+    static {
+        for (int i = 0; i < METHODS.length; i++) {
+            METHOD_BYTES[i] = METHODS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
     public static Request parse(String string) throws MalformedRequest {
-        String[] parts = string.split(" ", 3);
-        if (parts.length < 2) {
-            throw new MalformedRequest(string);
+        byte[] data = string.getBytes(StandardCharsets.UTF_8);
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parse a single request line held within a byte array. The JSON
+     * arguments are read by a streaming parser directly from the array
+     * without first copying the line into a String.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     * @throws MalformedRequest
+     */
+    public static Request parse(byte[] data, int offset, int length) throws MalformedRequest {
+        int end = offset + length;
+        int methodEnd = indexOf(data, offset, end, (byte) ' ');
+        if (methodEnd < 0) {
+            throw new MalformedRequest(new String(data, offset, length, StandardCharsets.UTF_8));
         }
-        if (parts.length == 2) {
-            return new Request(parts[0], parts[1]);
-        } else {
-            try {
-                Map<String, Object> data = MAPPER.readValue(parts[2], JSON_OBJECT);
-                return new Request(parts[0], parts[1], data);
-            } catch (IOException e) {
-                throw new MalformedRequest(string);
+        String method = method(data, offset, methodEnd);
+        int resourceEnd = indexOf(data, methodEnd + 1, end, (byte) ' ');
+        if (resourceEnd < 0) {
+            return new Request(method, new String(data, methodEnd + 1, end - methodEnd - 1, StandardCharsets.US_ASCII));
+        }
+        String resource = new String(data, methodEnd + 1, resourceEnd - methodEnd - 1, StandardCharsets.US_ASCII);
+        try (JsonParser parser = FACTORY.createJsonParser(data, resourceEnd + 1, end - resourceEnd - 1)) {
+            Map<String, Object> arguments = MAPPER.readValue(parser, JSON_OBJECT);
+            return new Request(method, resource, arguments);
+        } catch (IOException e) {
+            throw new MalformedRequest(new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the shared String for a standard method name, only creating a
+     * new String for a method that is not recognised.
+     *
+     */
+    private static String method(byte[] data, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < METHOD_BYTES.length; i++) {
+            byte[] candidate = METHOD_BYTES[i];
+            if (candidate.length == length) {
+                boolean match = true;
+                for (int j = 0; j < length && match; j++) {
+                    match = candidate[j] == data[start + j];
+                }
+                if (match) {
+                    return METHODS[i];
+                }
             }
         }
+        return new String(data, start, length, StandardCharsets.US_ASCII);
     }
 
     final private String method;
@@ -8,6 +8,8 @@ import org.zerograph.api.ResponderInterface;
 import org.zerograph.except.MalformedResponse;
 import org.zeromq.ZMQ;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public class Responder implements ResponderInterface {
@@ -22,13 +24,32 @@ public class Responder implements ResponderInterface {
     public static int FOOT = 6;
     public static int END = 7;
 
+    final public static int DEFAULT_FRAME_SIZE = 65536;
+
     final private ZMQ.Socket socket;
+    final private int frameSize;
+    final private StringBuilder buffer;
 
     private int responseCount = 0;
     private int state;
+    private long serializationTime = 0;
 
-    public Responder(ZMQ.Socket socket) {
+    /**
+     * Create a responder that accumulates output and sends it in frames of
+     * roughly frameSize characters, split on line boundaries. A frameSize
+     * of zero sends every line as a separate frame.
+     *
+     * @param socket
+     * @param frameSize
+     */
+    public Responder(ZMQ.Socket socket, int frameSize) {
         this.socket = socket;
+        this.frameSize = frameSize;
+        this.buffer = new StringBuilder(frameSize > 0 ? frameSize + 1024 : 0);
+    }
+
+    public Responder(ZMQ.Socket socket) {
+        this(socket, DEFAULT_FRAME_SIZE);
     }
 
     public ZMQ.Socket getSocket() {
@@ -38,6 +59,7 @@ public class Responder implements ResponderInterface {
     @Override
     public void beginResponseBatch() {
         responseCount = 0;
+        buffer.setLength(0);
     }
 
     @Override
@@ -51,7 +73,7 @@ public class Responder implements ResponderInterface {
     @Override
     public void sendHead(Map<String, Object> data) throws MalformedResponse {
         if (state == BEGIN) {
-            sendMore("head: " + YAML.dump(data));
+            sendMore("head: ", data);
             state = HEAD;
         } else {
             throw new MalformedResponse();
@@ -61,7 +83,7 @@ public class Responder implements ResponderInterface {
     @Override
     public void sendBody(Object data) throws MalformedResponse {
         if (state == BEGIN || state == HEAD) {
-            sendMore("body: " + YAML.dump(data));
+            sendMore("body: ", data);
             state = BODY;
         } else {
             throw new MalformedResponse();
@@ -81,15 +103,51 @@ public class Responder implements ResponderInterface {
     public void sendBodyItem(Object data) throws MalformedResponse {
         if (state == START_BODY_LIST) {
             sendMore("body:");
-            sendMore("- " + YAML.dump(data));
+            sendMore("- ", data);
             state = BODY_ITEM;
         } else if (state == BODY_ITEM) {
-            sendMore("- " + YAML.dump(data));
+            sendMore("- ", data);
         } else {
             throw new MalformedResponse();
         }
     }
 
+    /**
+     * Send a list item made up of the values of the given columns, writing
+     * each value straight into the response buffer.
+     *
+     */
+    @Override
+    public void sendBodyRow(Map<String, Object> row, List<String> columns) throws MalformedResponse {
+        if (state == START_BODY_LIST) {
+            sendMore("body:");
+            state = BODY_ITEM;
+        } else if (state != BODY_ITEM) {
+            throw new MalformedResponse();
+        }
+        int start = buffer.length();
+        long startTime = System.nanoTime();
+        buffer.append("- [");
+        try {
+            boolean first = true;
+            for (String column : columns) {
+                if (!first) {
+                    buffer.append(',');
+                }
+                YAML.write(buffer, row.get(column));
+                first = false;
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);  // StringBuilder does not throw
+        } catch (IllegalArgumentException ex) {
+            buffer.setLength(start);
+            throw ex;
+        }
+        buffer.append(']');
+        serializationTime += System.nanoTime() - startTime;
+        endLine(start);
+    }
+
     @Override
     public void endBodyList() throws MalformedResponse {
         if (state == START_BODY_LIST) {
@@ -105,7 +163,7 @@ public class Responder implements ResponderInterface {
     @Override
     public void sendFoot(Map<String, Object> data) throws MalformedResponse {
         if (state == BODY || state == END_BODY_LIST) {
-            sendMore("foot: " + YAML.dump(data));
+            sendMore("foot: ", data);
             state = FOOT;
         } else {
             throw new MalformedResponse();
@@ -114,7 +172,7 @@ public class Responder implements ResponderInterface {
 
     @Override
     public void sendError(Exception ex) {
-        sendMore("error: " + YAML.dump(ex.getMessage()));
+        sendMore("error: ", ex.getMessage());
         state = ERROR;
     }
 
@@ -126,6 +184,7 @@ public class Responder implements ResponderInterface {
 
     @Override
     public void endResponseBatch() {
+        flush();
         socket.send("");
     }
 
@@ -134,9 +193,58 @@ public class Responder implements ResponderInterface {
         socket.close();
     }
 
+    @Override
+    public long getSerializationTime() {
+        return serializationTime;
+    }
+
     private void sendMore(String data) {
-        Log.write(data, Log.SEND);
-        socket.sendMore(data + "\n");
+        if (Log.isEnabled(Log.SEND)) {
+            Log.write(data, Log.SEND);
+        }
+        buffer.append(data).append('\n');
+        if (buffer.length() >= frameSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Serialise a value straight into the response buffer as a single line.
+     *
+     */
+    private void sendMore(String prefix, Object data) {
+        int start = buffer.length();
+        long startTime = System.nanoTime();
+        buffer.append(prefix);
+        try {
+            YAML.write(buffer, data);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);  // StringBuilder does not throw
+        } catch (IllegalArgumentException ex) {
+            buffer.setLength(start);
+            throw ex;
+        }
+        serializationTime += System.nanoTime() - startTime;
+        endLine(start);
+    }
+
+    private void endLine(int start) {
+        if (Log.isEnabled(Log.SEND)) {
+            Log.write(buffer.substring(start), Log.SEND);
+        }
+        buffer.append('\n');
+        if (buffer.length() >= frameSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (buffer.length() > 0) {
+            long startTime = System.nanoTime();
+            socket.sendMore(buffer.toString());
+            buffer.setLength(0);
+            serializationTime += System.nanoTime() - startTime;
+        }
     }
 
     @Override
@@ -1,11 +1,25 @@
 package org.zerograph;
 
 import org.zerograph.api.ServiceInterface;
+import org.zerograph.except.MalformedResponse;
+import org.zerograph.except.ServerError;
 import org.zerograph.util.Log;
+import org.zeromq.ZFrame;
 import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
 import zmq.ZError;
 
-import java.nio.channels.ClosedChannelException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 public abstract class Service implements Runnable, ServiceInterface {
 
@@ -13,21 +27,61 @@ public abstract class Service implements Runnable, ServiceInterface {
         return host + ":" + port;
     }
 
-    final public static int WORKER_COUNT = 4;
+    final public static int DEFAULT_MIN_WORKERS = 1;
+    final public static int DEFAULT_MAX_WORKERS = Runtime.getRuntime().availableProcessors();
+    final public static int DEFAULT_WORKER_IDLE_TIMEOUT = 30000;  // milliseconds
+    final public static int DEFAULT_WORKER_PREFETCH = 2;
+    final public static int DEFAULT_HIBERNATION_IDLE_TIMEOUT = 0;  // milliseconds, zero for never
+
+    final public static byte[] READY = "READY".getBytes();
+    final public static byte[] STOP = "STOP".getBytes();
+    final public static byte[] FAILED = "FAILED".getBytes();
+
+    final private static long POLL_INTERVAL = 100;  // milliseconds
 
     final private String host;
     final private int port;
 
     final private Environment environment;
+    final private Metrics metrics;
 
     private ZMQ.Context context;
     private ZMQ.Socket external;  // incoming requests from clients
     private ZMQ.Socket internal;  // request forwarding to workers
 
+    private volatile boolean running;
+    private boolean cancelled;  // stopped before it had started
+    private boolean stopping;   // stop() already called
+    private CountDownLatch stopped;
+
+    private volatile int minWorkers;
+    private volatile int maxWorkers;
+    private volatile int workerCount;
+    private final int workerIdleTimeout;
+    private final int workerPrefetch;
+    private final int hibernationIdleTimeout;
+
     public Service(String host, int port) {
         this.host = host;
         this.port = port;
         this.environment = Environment.getInstance();
+        this.metrics = new Metrics();
+        int minWorkers = environment.getSetting(port, "workers.min", DEFAULT_MIN_WORKERS);
+        int maxWorkers = environment.getSetting(port, "workers.max", DEFAULT_MAX_WORKERS);
+        if (minWorkers < 1) {
+            Log.write("Invalid value for setting workers.min: " + minWorkers, Log.WARNING);
+            minWorkers = DEFAULT_MIN_WORKERS;
+        }
+        if (maxWorkers < minWorkers) {
+            Log.write("Setting workers.max (" + maxWorkers + ") is less than workers.min (" + minWorkers +
+                    ") for port " + port + ", using " + minWorkers, Log.WARNING);
+            maxWorkers = minWorkers;
+        }
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.workerIdleTimeout = environment.getSetting(port, "workers.idle_timeout", DEFAULT_WORKER_IDLE_TIMEOUT);
+        this.workerPrefetch = Math.max(1, environment.getSetting(port, "workers.prefetch", DEFAULT_WORKER_PREFETCH));
+        this.hibernationIdleTimeout = environment.getSetting(port, "hibernation.idle_timeout", DEFAULT_HIBERNATION_IDLE_TIMEOUT);
     }
 
     public String getHost() {
@@ -54,38 +108,359 @@ public abstract class Service implements Runnable, ServiceInterface {
         return context;
     }
 
-    public abstract void startWorkers();
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public int getMinWorkers() {
+        return minWorkers;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Change the bounds of the worker pool. The pool is grown or shrunk
+     * to fit the new bounds by the routing thread.
+     *
+     * @param min
+     * @param max
+     */
+    public void setWorkerLimits(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Worker limits must satisfy 1 <= min <= max");
+        }
+        this.minWorkers = min;
+        this.maxWorkers = max;
+    }
+
+    public abstract Worker createWorker();
+
+    /**
+     * Release any resources held for workers, once all workers have been
+     * stopped after a period of inactivity. They will be started again
+     * when the next request arrives.
+     *
+     */
+    protected void hibernate() {
+
+    }
+
+    /**
+     * Return true if resources are held that hibernation would release,
+     * whether or not any workers have been started.
+     *
+     */
+    protected boolean isOpen() {
+        return false;
+    }
 
     public void run() {
         start();
     }
 
-    public synchronized void start() {
+    public void start() {
         Log.write("Starting service on " + this.port);
-        this.context = ZMQ.context(1);
-        this.internal = context.socket(ZMQ.DEALER);
-        this.internal.bind(getInternalAddress());
-        this.external = context.socket(ZMQ.ROUTER);
-        this.external.bind(getExternalAddress());
-        startWorkers();
+        synchronized (this) {
+            if (cancelled) {
+                Log.write("Service on port " + this.port + " was stopped before starting");
+                return;
+            }
+            this.context = ZMQ.context(1);
+            this.internal = context.socket(ZMQ.ROUTER);
+            this.internal.bind(getInternalAddress());
+            this.external = context.socket(ZMQ.ROUTER);
+            this.external.bind(getExternalAddress());
+            this.running = true;
+            this.stopped = new CountDownLatch(1);
+        }
+        registerMetrics();
         try {
-            ZMQ.proxy(external, internal, null);
-        } catch (ZError.IOException ex) {
-            Throwable cause = ex.getCause();
-            if (cause instanceof ClosedChannelException) {
-                stop();
-            } else {
+            route();
+        } catch (ZMQException ex) {
+            if (ex.getErrorCode() != ZMQ.Error.ETERM.getCode()) {
                 throw ex;
             }
+        } catch (ZError.IOException ex) {
+            // context terminated underneath the poller
+        } finally {
+            external.close();
+            internal.close();
+            unregisterMetrics();
+            stopped.countDown();
+        }
+    }
+
+    private ObjectName getMetricsName() throws JMException {
+        return new ObjectName("org.zerograph:type=Metrics,port=" + port);
+    }
+
+    /**
+     * Expose the metrics of this service over JMX.
+     *
+     */
+    private void registerMetrics() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = getMetricsName();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException ex) {
+            Log.write("Cannot register metrics for port " + port + ": " + ex.getMessage(), Log.WARNING);
+        }
+    }
+
+    private void unregisterMetrics() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = getMetricsName();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            Log.write("Cannot unregister metrics for port " + port + ": " + ex.getMessage(), Log.WARNING);
         }
     }
 
     public void stop() {
         Log.write("Stopping service on port " + this.port);
-        external.close();
-        internal.close();
+        CountDownLatch stopped;
+        synchronized (this) {
+            if (context == null) {
+                // the service thread has not started yet, so make sure it never does
+                cancelled = true;
+                return;
+            }
+            if (stopping) {
+                // stopped for server shutdown before being dropped
+                return;
+            }
+            stopping = true;
+            running = false;
+            stopped = this.stopped;
+        }
+        try {
+            stopped.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         context.term();
         Log.write("Stopped service on port " + this.port);
     }
 
+    /**
+     * Route client requests to workers, queueing them while all workers are
+     * busy. While the pool is at its maximum size, each worker may also be
+     * given up to workers.prefetch batches at once so that it can begin the
+     * next as soon as it has sent its reply, without a round trip through
+     * this thread. A batch handed to a busy worker cannot be moved to
+     * another that frees up first, so only batches for which canPrefetch
+     * holds are handed out this way. The queue depth is used to grow the
+     * worker pool up to its maximum and surplus idle workers are retired
+     * after a period of inactivity.
+     *
+     * No workers are started until the first request arrives. If
+     * hibernation.idle_timeout is set, all workers are stopped and the
+     * service hibernated once it has been idle for that long, and workers
+     * are started again by the next request. A service opened ahead of its
+     * first request is hibernated in the same way, counting from the time
+     * it was opened.
+     *
+     * A worker that cannot start, such as when its database cannot be
+     * opened, gives up its place in the pool. If no other worker is left
+     * to take them, queued batches are answered with an error and no more
+     * workers are started until the next request.
+     *
+     */
+    private void route() {
+        LinkedHashMap<String, ZFrame> workers = new LinkedHashMap<>();
+        HashMap<String, Integer> loads = new HashMap<>();
+        LinkedList<ZMsg> pending = new LinkedList<>();
+        int startingWorkers = 0;
+        boolean dormant = true;
+        boolean open = false;
+        long lastBusy = System.currentTimeMillis();
+        ZMQ.Poller poller = new ZMQ.Poller(2);
+        poller.register(internal, ZMQ.Poller.POLLIN);
+        poller.register(external, ZMQ.Poller.POLLIN);
+        while (running) {
+            poller.poll(POLL_INTERVAL);
+            if (poller.pollin(0)) {
+                ZMsg message = ZMsg.recvMsg(internal);
+                ZFrame worker = message.unwrap();
+                String key = worker.strhex();
+                ZFrame first = message.peekFirst();
+                if (message.size() == 1 && Arrays.equals(first.getData(), READY)) {
+                    workers.put(key, worker);
+                    loads.put(key, 0);
+                    startingWorkers -= 1;
+                    message.destroy();
+                } else if (message.size() == 2 && Arrays.equals(first.getData(), FAILED)) {
+                    // the worker could not start and has already exited
+                    startingWorkers -= 1;
+                    workerCount -= 1;
+                    message.removeFirst().destroy();
+                    String reason = message.popString();
+                    if (workers.isEmpty() && startingWorkers == 0) {
+                        // no worker will take these, so answer them now and
+                        // wait for the next request before trying again
+                        while (!pending.isEmpty()) {
+                            sendFailure(pending.removeFirst(), reason);
+                        }
+                        dormant = true;
+                    }
+                    message.destroy();
+                } else {
+                    loads.put(key, loads.get(key) - 1);
+                    message.send(external);
+                    lastBusy = System.currentTimeMillis();
+                }
+            }
+            if (poller.pollin(1)) {
+                pending.add(ZMsg.recvMsg(external));
+                if (dormant) {
+                    Log.write("Starting workers");
+                    dormant = false;
+                }
+            }
+            boolean full = workerCount >= maxWorkers && workerPrefetch > 1;
+            while (!pending.isEmpty()) {
+                int maxLoad = full && canPrefetch(pending.peekFirst()) ? workerPrefetch : 1;
+                String key = leastLoaded(loads, maxLoad);
+                if (key == null) {
+                    break;
+                }
+                ZMsg message = pending.removeFirst();
+                message.wrap(workers.get(key).duplicate());
+                message.send(internal);
+                loads.put(key, loads.get(key) + 1);
+                lastBusy = System.currentTimeMillis();
+            }
+            // grow
+            int wanted = dormant ? 0 : Math.max(minWorkers - workerCount, pending.size() - startingWorkers);
+            for (int i = 0; i < wanted && workerCount < maxWorkers; i++) {
+                startWorker();
+                startingWorkers += 1;
+            }
+            // shrink
+            if (isOpen() != open) {
+                // opened in the background or hibernated, so idle from now
+                open = !open;
+                lastBusy = System.currentTimeMillis();
+            }
+            if (pending.isEmpty() && (!dormant || open)) {
+                long now = System.currentTimeMillis();
+                if (hibernationIdleTimeout > 0 && now - lastBusy > hibernationIdleTimeout &&
+                        startingWorkers == 0 && isIdle(loads)) {
+                    if (!dormant) {
+                        Log.write("Stopping workers");
+                        for (String key : loads.keySet()) {
+                            stopWorker(workers.get(key));
+                        }
+                        workers.clear();
+                        loads.clear();
+                    }
+                    hibernate();
+                    dormant = true;
+                } else if (workerCount > maxWorkers || (workerCount > minWorkers && now - lastBusy > workerIdleTimeout)) {
+                    String key = leastLoaded(loads, 1);
+                    if (key != null) {
+                        loads.remove(key);
+                        stopWorker(workers.remove(key));
+                        lastBusy = now;
+                    }
+                }
+            }
+        }
+        for (String key : loads.keySet()) {
+            if (loads.get(key) == 0) {
+                stopWorker(workers.get(key));
+            }
+        }
+    }
+
+    /**
+     * Check whether a queued batch may be handed to a worker that is still
+     * busy with another. By default, no batch is.
+     *
+     */
+    protected boolean canPrefetch(ZMsg batch) {
+        return false;
+    }
+
+    /**
+     * Find the worker with the fewest batches in hand, if it has fewer
+     * than maxLoad.
+     *
+     */
+    private static String leastLoaded(HashMap<String, Integer> loads, int maxLoad) {
+        String selected = null;
+        int selectedLoad = maxLoad;
+        for (Map.Entry<String, Integer> entry : loads.entrySet()) {
+            int load = entry.getValue();
+            if (load < selectedLoad) {
+                selected = entry.getKey();
+                selectedLoad = load;
+                if (load == 0) {
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isIdle(HashMap<String, Integer> loads) {
+        for (int load : loads.values()) {
+            if (load > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Answer a client request batch with an error, on behalf of a worker
+     * that could not be started to handle it.
+     *
+     */
+    private void sendFailure(ZMsg message, String reason) {
+        ZFrame client = message.unwrap();
+        message.destroy();
+        client.send(external, ZFrame.MORE);
+        external.sendMore("");
+        Responder responder = new Responder(external);
+        responder.beginResponseBatch();
+        try {
+            responder.beginResponse();
+            responder.sendError(new ServerError("Cannot start worker: " + reason));
+        } catch (MalformedResponse ex) {
+            throw new IllegalStateException(ex);  // a new response is always well formed
+        }
+        responder.endResponse();
+        responder.endResponseBatch();
+    }
+
+    private void startWorker() {
+        Worker worker = createWorker();
+        Thread thread = new Thread(worker);
+        String uuid = worker.getUUID().toString();
+        thread.setName(getPort() + "/" + uuid.substring(uuid.length() - 7));
+        workerCount += 1;
+        thread.start();
+    }
+
+    private void stopWorker(ZFrame worker) {
+        ZMsg message = new ZMsg();
+        message.add(STOP);
+        message.wrap(worker);
+        message.send(internal);
+        workerCount -= 1;
+    }
+
 }
@@ -0,0 +1,91 @@
+package org.zerograph;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.zerograph.util.StripedCounter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Interned labels and relationship types, shared by all workers of a
+ * Graph. Each kind of token is held up to a fixed number of entries;
+ * once full, new tokens are still returned but not retained, so a client
+ * sending an unbounded variety of names cannot exhaust memory. Property
+ * keys are plain strings with no wrapper to save, so are not cached.
+ *
+ * Only the name wrappers are cached: Neo4j still resolves each name to
+ * its token ID through its own token holders, so this saves allocation
+ * and garbage per request rather than any lookup within the database.
+ * Hits are counted per thread stripe as they are taken on every request;
+ * misses are rare enough to share a single counter.
+ */
+public class TokenCache {
+
+    final public static int DEFAULT_SIZE = 10000;
+
+    final private int size;
+
+    final private ConcurrentHashMap<String, Label> labels;
+    final private ConcurrentHashMap<String, RelationshipType> types;
+
+    final private StripedCounter hits;
+    final private AtomicLong misses;
+
+    public TokenCache(int size) {
+        this.size = size;
+        this.labels = new ConcurrentHashMap<>();
+        this.types = new ConcurrentHashMap<>();
+        this.hits = new StripedCounter();
+        this.misses = new AtomicLong();
+    }
+
+    public TokenCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public Label getLabel(String name) {
+        Label label = labels.get(name);
+        if (label == null) {
+            misses.incrementAndGet();
+            label = DynamicLabel.label(name);
+            if (labels.size() < size) {
+                Label existing = labels.putIfAbsent(name, label);
+                if (existing != null) {
+                    label = existing;
+                }
+            }
+        } else {
+            hits.increment();
+        }
+        return label;
+    }
+
+    public RelationshipType getRelationshipType(String name) {
+        RelationshipType type = types.get(name);
+        if (type == null) {
+            misses.incrementAndGet();
+            type = DynamicRelationshipType.withName(name);
+            if (types.size() < size) {
+                RelationshipType existing = types.putIfAbsent(name, type);
+                if (existing != null) {
+                    type = existing;
+                }
+            }
+        } else {
+            hits.increment();
+        }
+        return type;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
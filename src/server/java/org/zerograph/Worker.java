@@ -11,6 +11,8 @@ import org.zerograph.except.MethodNotAllowed;
 import org.zerograph.except.ServerError;
 import org.zeromq.ZMQ;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.UUID;
 
 public abstract class Worker<S extends ServiceInterface> implements Runnable {
@@ -18,17 +20,40 @@ public abstract class Worker<S extends ServiceInterface> implements Runnable {
     final protected UUID uuid;
     final protected ZMQ.Socket socket;
 
+    final public static String DEFAULT_ENCODING = "yaml";
+
+    final private static byte[] DELIMITER = new byte[0];
+
     final protected S service;
-    final protected ResponderInterface responder;
-    final protected ResourceSet resourceSet;
+    final protected Metrics metrics;
+
+    final private ArrayList<byte[]> envelope;
+    final private HashMap<String, ResponderInterface> responders;
+    final private HashMap<String, ResourceSet> resourceSets;
+
+    protected ResponderInterface responder;
+    protected ResourceSet resourceSet;
 
     public Worker(S service) {
         this.uuid = UUID.randomUUID();
         this.service = service;
-        this.socket = service.getContext().socket(ZMQ.REP);
+        this.metrics = service.getMetrics();
+        // a DEALER socket does not enforce send/receive lockstep, so the
+        // service can hand over the next batch before this one is answered
+        this.socket = service.getContext().socket(ZMQ.DEALER);
+        this.socket.setIdentity(this.uuid.toString().getBytes());
         this.socket.connect(this.service.getInternalAddress());
-        this.responder = new Responder(this.getSocket());
-        this.resourceSet = service.createResourceSet(responder);
+        this.envelope = new ArrayList<>();
+        int frameSize = service.getEnvironment().getSetting(service.getPort(), "responses.frame_size", Responder.DEFAULT_FRAME_SIZE);
+        this.responders = new HashMap<>(2);
+        this.responders.put("yaml", new Responder(this.getSocket(), frameSize));
+        this.responders.put("msgpack", new MessagePackResponder(this.getSocket(), frameSize));
+        this.resourceSets = new HashMap<>(2);
+        for (String encoding : responders.keySet()) {
+            resourceSets.put(encoding, service.createResourceSet(responders.get(encoding)));
+        }
+        this.responder = responders.get(DEFAULT_ENCODING);
+        this.resourceSet = resourceSets.get(DEFAULT_ENCODING);
     }
 
     public UUID getUUID() {
@@ -43,40 +68,154 @@ public abstract class Worker<S extends ServiceInterface> implements Runnable {
         return this.socket;
     }
 
+    /**
+     * Tell the service that this worker is available for requests.
+     *
+     */
+    protected void ready() {
+        socket.sendMore(DELIMITER);
+        socket.send(Service.READY);
+    }
+
+    /**
+     * Tell the service that this worker could not start, so that its
+     * place in the pool can be given up.
+     *
+     * @param reason
+     */
+    protected void failed(String reason) {
+        socket.sendMore(DELIMITER);
+        socket.sendMore(Service.FAILED);
+        socket.send(reason == null ? "" : reason);
+    }
+
+    /**
+     * Receive the address envelope of the next request batch, leaving the
+     * batch content on the socket.
+     *
+     * @return false if the service has asked this worker to stop
+     */
+    protected boolean receiveEnvelope() {
+        envelope.clear();
+        socket.recv();  // delimiter
+        byte[] frame = socket.recv();
+        if (!socket.hasReceiveMore()) {
+            return false;  // control message (STOP)
+        }
+        while (frame.length > 0) {
+            envelope.add(frame);
+            frame = socket.recv();
+        }
+        return true;
+    }
+
+    /**
+     * Address the reply to the client that sent the current request batch.
+     *
+     */
+    protected void sendEnvelope() {
+        socket.sendMore(DELIMITER);
+        for (byte[] frame : envelope) {
+            socket.sendMore(frame);
+        }
+        socket.sendMore(DELIMITER);
+    }
+
+    /**
+     * Select the response encoding for the current request batch and begin
+     * the response batch. If the encoding is not supported, the default is
+     * selected instead.
+     *
+     * @param encoding
+     * @throws ClientError
+     */
+    protected void beginResponseBatch(String encoding) throws ClientError {
+        boolean supported = responders.containsKey(encoding);
+        String selected = supported ? encoding : DEFAULT_ENCODING;
+        responder = responders.get(selected);
+        resourceSet = resourceSets.get(selected);
+        responder.beginResponseBatch();
+        if (!supported) {
+            throw new ClientError("Unsupported encoding: " + encoding);
+        }
+    }
+
     protected PropertyContainer handle(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
         String requestedResource = request.getResource();
         if (resourceSet.contains(requestedResource)) {
             ResourceInterface resource = resourceSet.get(requestedResource);
+            String method = getMethodName(request.getMethod());
+            if (method == null) {
+                throw new MethodNotAllowed(request.getMethod() + " " + request.getResource());
+            }
+            // timings are keyed by the method as dispatched, so that clients
+            // cannot grow the metrics without limit by varying its spelling
+            Metrics.RequestMetrics requestMetrics = metrics.getRequestMetrics(requestedResource, method);
             PropertyContainer entity;
-            responder.beginResponse();
-            switch (request.getMethod().charAt(0)) {
-                case 'G':  // GET
-                    entity = resource.get(request, database);
-                    break;
-                case 'S':  // SET
-                    entity = resource.set(request, database);
-                    break;
-                case 'P':  // PATCH
-                    entity = resource.patch(request, database);
-                    break;
-                case 'C':  // CREATE
-                    entity = resource.create(request, database);
-                    break;
-                case 'D':  // DELETE
-                    entity = resource.delete(request, database);
-                    break;
-                case 'E':  // EXECUTE
-                case 'X':  // EXECUTE
-                    entity = resource.execute(request, database);
-                    break;
-                default:
-                    throw new MethodNotAllowed(request.getMethod() + " " + request.getResource());
+            long startTime = System.nanoTime();
+            long startSerializationTime = responder.getSerializationTime();
+            try {
+                responder.beginResponse();
+                switch (method) {
+                    case "GET":
+                        entity = resource.get(request, database);
+                        break;
+                    case "SET":
+                        entity = resource.set(request, database);
+                        break;
+                    case "PATCH":
+                        entity = resource.patch(request, database);
+                        break;
+                    case "CREATE":
+                        entity = resource.create(request, database);
+                        break;
+                    case "DELETE":
+                        entity = resource.delete(request, database);
+                        break;
+                    default:
+                        entity = resource.execute(request, database);
+                        break;
+                }
+                responder.endResponse();
+            } catch (ClientError | ServerError | RuntimeException ex) {
+                requestMetrics.recordError();
+                throw ex;
             }
-            responder.endResponse();
+            long serializationTime = responder.getSerializationTime() - startSerializationTime;
+            long executionTime = System.nanoTime() - startTime - serializationTime;
+            requestMetrics.record(executionTime, serializationTime);
             return entity;
         } else {
             throw new ClientError("This service does not provide a resource called " + requestedResource);
         }
     }
 
+    /**
+     * Return the method that a request method is dispatched as, which is
+     * decided by its first letter alone, or null if there is none.
+     *
+     */
+    protected static String getMethodName(String method) {
+        if (method.isEmpty()) {
+            return null;
+        }
+        switch (method.charAt(0)) {
+            case 'G':
+                return "GET";
+            case 'S':
+                return "SET";
+            case 'P':
+                return "PATCH";
+            case 'C':
+                return "CREATE";
+            case 'D':
+                return "DELETE";
+            case 'E':
+            case 'X':
+                return "EXECUTE";
+            default:
+                return null;
+        }
+    }
+
 }
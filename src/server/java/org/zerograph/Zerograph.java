@@ -6,13 +6,23 @@ import org.apache.commons.daemon.DaemonInitException;
 import org.zerograph.util.Log;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class Zerograph implements Daemon {
 
     public static int ZEROGRAPH_PORT = 47470;
 
+    // recovery is mostly spent waiting on disk, so use a few threads even
+    // on a small machine
+    final public static int DEFAULT_STARTUP_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private ExecutorService startupPool;
+
     public static void main(String... args) throws Exception {
         Zerograph zerograph = new Zerograph();
         zerograph.start();
@@ -23,18 +33,56 @@ public class Zerograph implements Daemon {
 
     }
 
+    /**
+     * Start a service for every existing graph. Each port is bound
+     * straight away while databases are opened, and recovered if
+     * necessary, in the background on up to startup.threads threads at
+     * once. Requests to a graph wait only for its own database to open.
+     * With startup.threads set to zero, each database is left closed until
+     * first used. A graph dropped before its turn comes is skipped.
+     *
+     */
     @Override
     public void start() throws Exception {
         Thread.currentThread().setName("-----/-------");
-        Set<Graph> graphs = detectGraphs();
+        Set<Integer> ports = detectGraphs();
         Log.write("Starting graph services");
-        for (Graph graph : graphs) {
-            Thread thread = new Thread(graph);
-            thread.setName(graph.getPort() + "/-------");
-            thread.start();
+        int threads = Environment.getInstance().getSetting(0, "startup.threads", DEFAULT_STARTUP_THREADS);
+        startupPool = threads > 0 ? Executors.newFixedThreadPool(Math.min(threads, ports.size())) : null;
+        // register every graph with the memory budget before any is opened,
+        // so that the first to open is offered only its own share
+        ArrayList<Graph> graphs = new ArrayList<>(ports.size());
+        for (int port : ports) {
+            graphs.add(Graph.open("localhost", port));
+        }
+        if (startupPool != null) {
+            for (Graph graph : graphs) {
+                graph.openInBackground(startupPool);
+            }
+        }
+        if (startupPool != null) {
+            startupPool.shutdown();
         }
     }
 
+    /**
+     * Wait for the databases opened at startup to finish opening.
+     *
+     * @param timeout
+     * @param unit
+     * @return false if the timeout passed first
+     */
+    public boolean awaitStartup(long timeout, TimeUnit unit) throws InterruptedException {
+        return startupPool == null || startupPool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stop all graph services and close their databases. Databases still
+     * waiting to be opened at startup are skipped, but any already being
+     * opened are left to finish, since interrupting a store open or
+     * recovery would leave it to be redone on the next start.
+     *
+     */
     @Override
     public void stop() throws Exception {
         Set<Graph> graphs = Graph.getAllRunning();
@@ -42,6 +90,15 @@ public class Zerograph implements Daemon {
         for (Graph graph : graphs) {
             graph.stop();
         }
+        if (startupPool != null) {
+            startupPool.shutdown();
+            while (!startupPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                Log.write("Waiting for databases to finish opening");
+            }
+        }
+        for (Graph graph : graphs) {
+            graph.close();
+        }
     }
 
     @Override
@@ -49,7 +106,7 @@ public class Zerograph implements Daemon {
 
     }
 
-    private Set<Graph> detectGraphs() {
+    private Set<Integer> detectGraphs() {
         Log.write("Detecting graphs");
         HashSet<Integer> ports = new HashSet<>();
         ports.add(ZEROGRAPH_PORT);
@@ -61,11 +118,7 @@ public class Zerograph implements Daemon {
                 // shouldn't happen :-/
             }
         }
-        HashSet<Graph> graphs = new HashSet<>();
-        for (int port : ports) {
-            graphs.add(new Graph("localhost", port));
-        }
-        return graphs;
+        return ports;
     }
 
 }
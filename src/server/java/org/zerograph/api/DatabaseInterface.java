@@ -2,6 +2,7 @@ package org.zerograph.api;
 
 import org.neo4j.cypher.CypherException;
 import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
@@ -11,6 +12,8 @@ import java.util.Map;
 
 public interface DatabaseInterface {
 
+    public GraphDatabaseService getDatabase();
+
     public ExecutionResult execute(String query) throws CypherException;
 
     public ExecutionResult execute(String query, Map<String, Object> params) throws CypherException;
@@ -25,6 +28,8 @@ public interface DatabaseInterface {
 
     public Node createNode(List labelNames, Map properties);
 
+    public long[] createNodes(List labelNames, Map<String, List> columns, int count);
+
     public void deleteNode(long id) throws NotFoundException;
 
     public Relationship getRelationship(long id) throws NotFoundException;
@@ -35,12 +40,16 @@ public interface DatabaseInterface {
 
     public Relationship createRelationship(Node startNode, Node endNode, String type, Map properties);
 
+    public int createRelationships(long[] startNodeIds, long[] endNodeIds, String type, Map<String, List> columns) throws NotFoundException;
+
     public void deleteRelationship(long id) throws NotFoundException;
 
     public Iterable<Node> matchNodeSet(String label, String key, Object value);
 
     public Iterable<Node> mergeNodeSet(String label, String key, Object value);
 
+    public int mergeNodes(String label, String key, List values, long[] ids);
+
     public Iterable<Node> purgeNodeSet(String label, String key, Object value);
 
     public Iterable<Relationship> matchRelationshipSet(Node startNode, Node endNode, String type);
@@ -4,6 +4,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.zerograph.except.MalformedResponse;
 
+import java.util.List;
 import java.util.Map;
 
 public interface ResponderInterface {
@@ -20,6 +21,8 @@ public interface ResponderInterface {
 
     public void sendBodyItem(Object data) throws MalformedResponse;
 
+    public void sendBodyRow(Map<String, Object> row, List<String> columns) throws MalformedResponse;
+
     public void endBodyList() throws MalformedResponse;
 
     public void sendFoot(Map<String, Object> data) throws MalformedResponse;
@@ -32,6 +35,13 @@ public interface ResponderInterface {
 
     public void close();
 
+    /**
+     * Total time, in nanoseconds, this responder has spent encoding response
+     * data and passing it to the socket.
+     *
+     */
+    public long getSerializationTime();
+
     public Node sendNodes(Iterable<Node> result) throws MalformedResponse;
 
     public Relationship sendRelationships(Iterable<Relationship> result) throws MalformedResponse;
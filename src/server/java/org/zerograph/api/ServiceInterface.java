@@ -1,6 +1,7 @@
 package org.zerograph.api;
 
 import org.zerograph.Environment;
+import org.zerograph.Metrics;
 import org.zerograph.ResourceSet;
 import org.zeromq.ZMQ;
 
@@ -18,6 +19,8 @@ public interface ServiceInterface {
 
     public ZMQ.Context getContext();
 
+    public Metrics getMetrics();
+
     public void start();
 
     public void stop();
@@ -3,14 +3,19 @@ package org.zerograph.resources;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.PropertyContainer;
+import org.zerograph.Cursor;
+import org.zerograph.CursorSet;
 import org.zerograph.api.DatabaseInterface;
 import org.zerograph.api.ResourceInterface;
 import org.zerograph.api.RequestInterface;
 import org.zerograph.api.ResponderInterface;
 import org.zerograph.except.ClientError;
+import org.zerograph.except.MalformedResponse;
 import org.zerograph.except.MethodNotAllowed;
 import org.zerograph.except.ServerError;
 
+import java.util.HashMap;
+import java.util.Iterator;
 
 public abstract class AbstractResource implements ResourceInterface {
 
@@ -66,4 +71,109 @@ public abstract class AbstractResource implements ResourceInterface {
         }
     }
 
+    /**
+     * Find and resume the open cursor identified by the "cursor" argument
+     * of a request. A resumed cursor must be passed to sendPage, or closed,
+     * before the request ends.
+     *
+     * @return the cursor or null if the request does not name one
+     * @throws ClientError if the cursor is not open or is being read by
+     *                     another request
+     */
+    protected Cursor getCursor(RequestInterface request, CursorSet cursors) throws ClientError {
+        Long cursorID = request.getArgumentAsLong("cursor", null);
+        if (cursorID == null) {
+            return null;
+        }
+        Cursor cursor = cursors.get(cursorID);
+        if (cursor == null || !getName().equals(cursor.getResource())) {
+            throw new ClientError("Cursor " + cursorID + " not found");
+        }
+        if (!cursor.tryResume()) {
+            throw new ClientError("Cursor " + cursorID + " is in use");
+        }
+        return cursor;
+    }
+
+    /**
+     * Open a cursor for the first page of a request. Until the cursor is
+     * suspended or closed, the calling thread reads within the cursor
+     * transaction instead of that of the request batch.
+     *
+     */
+    protected Cursor openCursor(CursorSet cursors, DatabaseInterface database) {
+        return cursors.open(getName(), database.getDatabase());
+    }
+
+    protected Long getLimit(RequestInterface request) throws ClientError {
+        Long limit = request.getArgumentAsLong("limit", null);
+        if (limit != null && limit < 0) {
+            throw new ClientError("Limit cannot be negative");
+        }
+        return limit;
+    }
+
+    /**
+     * Send up to limit items from a resumed cursor as a body list, followed
+     * by a foot holding the cursor for the next page. The cursor is then
+     * suspended, or closed if no items remain. With no limit, all
+     * remaining items are sent.
+     *
+     * @return the first item sent
+     */
+    protected PropertyContainer sendPage(Cursor cursor, CursorSet cursors, Long limit) throws MalformedResponse {
+        long pageSize = limit == null ? Long.MAX_VALUE : limit;
+        Iterator<?> items = cursor.getItems();
+        PropertyContainer first = null;
+        boolean more = false;
+        try {
+            long count = 0;
+            responder.startBodyList();
+            while (count < pageSize && items.hasNext()) {
+                Object item = items.next();
+                if (count == 0 && item instanceof PropertyContainer) {
+                    first = (PropertyContainer) item;
+                }
+                responder.sendBodyItem(item);
+                count += 1;
+            }
+            responder.endBodyList();
+            more = items.hasNext();
+        } finally {
+            endPage(cursor, cursors, more);
+        }
+        sendCursor(more ? cursor : null);
+        return first;
+    }
+
+    protected static void skip(Iterator<?> items, long count) {
+        for (long i = 0; i < count && items.hasNext(); i++) {
+            items.next();
+        }
+    }
+
+    /**
+     * Suspend a cursor once a page has been read from it, or close it if
+     * no items remain or the page could not be read.
+     *
+     */
+    protected static void endPage(Cursor cursor, CursorSet cursors, boolean more) {
+        if (more) {
+            cursor.suspend();
+        } else {
+            cursors.close(cursor);
+        }
+    }
+
+    /**
+     * Send a foot holding the ID of the cursor from which the next page can
+     * be fetched, or null if no items remain.
+     *
+     */
+    protected void sendCursor(Cursor cursor) throws MalformedResponse {
+        HashMap<String, Object> stats = new HashMap<>(1);
+        stats.put("cursor", cursor == null ? null : cursor.getId());
+        responder.sendFoot(stats);
+    }
+
 }
@@ -3,16 +3,19 @@ package org.zerograph.resources;
 import org.neo4j.cypher.CypherException;
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.ResourceIterator;
+import org.zerograph.Cursor;
+import org.zerograph.CursorSet;
 import org.zerograph.api.DatabaseInterface;
 import org.zerograph.api.ResourceInterface;
 import org.zerograph.api.RequestInterface;
 import org.zerograph.api.ResponderInterface;
 import org.zerograph.except.ClientError;
+import org.zerograph.except.MalformedResponse;
 import org.zerograph.except.ServerError;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -20,8 +23,15 @@ public class CypherResource extends AbstractResource implements ResourceInterfac
 
     final private static String NAME = "Cypher";
 
-    public CypherResource(ResponderInterface responder) {
+    final private CursorSet cursors;
+
+    public CypherResource(ResponderInterface responder, CursorSet cursors) {
         super(responder);
+        this.cursors = cursors;
+    }
+
+    public CypherResource(ResponderInterface responder) {
+        this(responder, new CursorSet());
     }
 
     public String getName() {
@@ -30,45 +40,121 @@ public class CypherResource extends AbstractResource implements ResourceInterfac
 
     /**
      * EXECUTE Cypher {"query": …, "params": …}
+     * EXECUTE Cypher {"query": …, "params": …, "skip": …, "limit": …}
+     * EXECUTE Cypher {"cursor": …, "limit": …}
      *
+     * Rows are written to the response as they are read from the result.
+     * If a limit is given, the foot holds the ID of a cursor from which
+     * the remaining rows can be fetched, or null if there are none. A
+     * cursor given without a limit fetches all remaining rows and is then
+     * closed. A paged query runs in a read-only transaction of its own,
+     * kept open by the cursor between pages, so updating queries cannot be
+     * paged.
      */
     @Override
     public PropertyContainer execute(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
-        String query = request.getArgumentAsString("query");
-        Map<String, Object> params = request.getArgumentAsMap("params", null);
-        try {
-            ExecutionResult result;
-            if (params == null) {
-                result = database.execute(query);
-            } else {
-                result = database.execute(query, params);
+        Long limit = getLimit(request);
+        Cursor cursor = getCursor(request, cursors);
+        if (cursor == null) {
+            if (limit == null) {
+                return sendAll(request, database);
             }
-            HashMap<String, Object> meta = new HashMap<>();
-            List<String> columns = result.columns();
-            meta.put("columns", Arrays.asList(columns.toArray(new Object[columns.size()])));
-            responder.sendHead(meta);
-            PropertyContainer firstEntity = null;
-            int rowNumber = 0;
-            responder.startBodyList();
-            for (Map<String, Object> row : result) {
-                ArrayList<Object> values = new ArrayList<>();
-                for (String column : columns) {
-                    values.add(row.get(column));
+            cursor = openCursor(cursors, database);
+            try {
+                ExecutionResult result = runQuery(request, database);
+                if (result.getQueryStatistics().containsUpdates()) {
+                    throw new ClientError("Cannot page through the result of an updating query");
                 }
-                responder.sendBodyItem(Arrays.asList(values.toArray(new Object[values.size()])));
-                if (rowNumber == 0) {
-                    Object firstValue = values.get(0);
+                ResourceIterator<Map<String, Object>> rows = result.iterator();
+                cursor.setItems(rows, result.columns());
+                skip(rows, request.getArgumentAsLong("skip", 0L));
+            } catch (CypherException ex) {
+                cursors.close(cursor);
+                throw new ClientError(ex.getMessage());
+            } catch (ClientError | RuntimeException ex) {
+                cursors.close(cursor);
+                throw ex;
+            }
+        }
+        long pageSize = limit == null ? Long.MAX_VALUE : limit;
+        @SuppressWarnings("unchecked")
+        Iterator<Map<String, Object>> rows = (Iterator<Map<String, Object>>) cursor.getItems();
+        PropertyContainer firstEntity;
+        boolean more = false;
+        try {
+            firstEntity = sendRows(cursor.getColumns(), rows, pageSize);
+            more = rows.hasNext();
+        } finally {
+            endPage(cursor, cursors, more);
+        }
+        sendCursor(more ? cursor : null);
+        return firstEntity;
+    }
+
+    private PropertyContainer sendAll(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
+        ExecutionResult result = runQuery(request, database);
+        try (ResourceIterator<Map<String, Object>> rows = result.iterator()) {
+            return sendRows(result.columns(), rows, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Send a head holding the result columns, followed by up to pageSize
+     * rows as a body list.
+     *
+     * @return the first value of the first row, if an entity
+     */
+    private PropertyContainer sendRows(List<String> columns, Iterator<Map<String, Object>> rows, long pageSize) throws ClientError, MalformedResponse {
+        HashMap<String, Object> meta = new HashMap<>();
+        meta.put("columns", columns);
+        responder.sendHead(meta);
+        PropertyContainer firstEntity = null;
+        long rowCount = 0;
+        try {
+            responder.startBodyList();
+            while (rowCount < pageSize && rows.hasNext()) {
+                Map<String, Object> row = rows.next();
+                responder.sendBodyRow(row, columns);
+                if (rowCount == 0 && !columns.isEmpty()) {
+                    Object firstValue = row.get(columns.get(0));
                     if (firstValue instanceof PropertyContainer) {
                         firstEntity = (PropertyContainer)firstValue;
                     }
                 }
-                rowNumber += 1;
+                rowCount += 1;
             }
             responder.endBodyList();
-            return firstEntity;
         } catch (CypherException ex) {
             throw new ClientError(ex.getMessage());
         }
+        return firstEntity;
+    }
+
+    private ExecutionResult runQuery(RequestInterface request, DatabaseInterface database) throws ClientError {
+        Map<String, Object> params = request.getArgumentAsMap("params", null);
+        try {
+            if (params == null) {
+                return database.execute(request.getArgumentAsString("query"));
+            } else {
+                return database.execute(request.getArgumentAsString("query"), params);
+            }
+        } catch (CypherException ex) {
+            throw new ClientError(ex.getMessage());
+        }
+    }
+
+    /**
+     * DELETE Cypher {"cursor": …}
+     *
+     */
+    @Override
+    public PropertyContainer delete(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
+        long cursorID = request.getArgumentAsLong("cursor");
+        if (cursors.close(cursorID)) {
+            return null;
+        } else {
+            throw new ClientError("Cursor " + cursorID + " not found");
+        }
     }
 
 }
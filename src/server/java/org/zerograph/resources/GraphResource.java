@@ -6,7 +6,6 @@ import org.zerograph.except.GraphNotStartedException;
 import org.zerograph.api.DatabaseInterface;
 import org.zerograph.Graph;
 import org.zerograph.GraphDirectory;
-import org.zerograph.api.GraphInterface;
 import org.zerograph.api.ResourceInterface;
 import org.zerograph.api.RequestInterface;
 import org.zerograph.api.ResponderInterface;
@@ -45,18 +44,33 @@ public class GraphResource extends AbstractResource implements ResourceInterface
 
     /**
      * PATCH Graph {"host": …, "port": …}
+     * PATCH Graph {"host": …, "port": …, "min_workers": …, "max_workers": …}
      *
+     * Open a graph if not already open and, optionally, resize its worker
+     * pool.
      */
     @Override
     public PropertyContainer patch(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
         String host = request.getArgumentAsString("host");
         int port = request.getArgumentAsInteger("port");
+        Integer minWorkers = request.getArgumentAsInteger("min_workers", null);
+        Integer maxWorkers = request.getArgumentAsInteger("max_workers", null);
+        Graph graph;
         try {
-            GraphInterface graph = Graph.open(host, port);
-            responder.sendBody(graph);
+            graph = Graph.open(host, port);
         } catch (GraphAlreadyStartedException ex) {
-            responder.sendBody(ex.getGraph());
+            graph = ex.getGraph();
         }
+        if (minWorkers != null || maxWorkers != null) {
+            int min = minWorkers == null ? graph.getMinWorkers() : minWorkers;
+            int max = maxWorkers == null ? Math.max(min, graph.getMaxWorkers()) : maxWorkers;
+            try {
+                graph.setWorkerLimits(min, max);
+            } catch (IllegalArgumentException ex) {
+                throw new ClientError(ex.getMessage());
+            }
+        }
+        responder.sendBody(graph);
         return null;
     }
 
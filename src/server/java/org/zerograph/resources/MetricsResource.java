@@ -0,0 +1,39 @@
+package org.zerograph.resources;
+
+import org.neo4j.graphdb.PropertyContainer;
+import org.zerograph.Metrics;
+import org.zerograph.api.DatabaseInterface;
+import org.zerograph.api.RequestInterface;
+import org.zerograph.api.ResourceInterface;
+import org.zerograph.api.ResponderInterface;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+
+public class MetricsResource extends AbstractResource implements ResourceInterface {
+
+    final private static String NAME = "Metrics";
+
+    final private Metrics metrics;
+
+    public MetricsResource(ResponderInterface responder, Metrics metrics) {
+        super(responder);
+        this.metrics = metrics;
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * GET Metrics {}
+     *
+     * Return the latency and throughput figures for this graph. All times
+     * are in microseconds.
+     */
+    @Override
+    public PropertyContainer get(RequestInterface request, DatabaseInterface database) throws ClientError, ServerError {
+        responder.sendBody(metrics.toMap());
+        return null;
+    }
+
+}
@@ -2,6 +2,9 @@ package org.zerograph.resources;
 
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.zerograph.Cursor;
+import org.zerograph.CursorSet;
 import org.zerograph.api.DatabaseInterface;
 import org.zerograph.api.ResourceInterface;
 import org.zerograph.api.RequestInterface;
@@ -9,14 +12,33 @@ import org.zerograph.api.ResponderInterface;
 import org.zerograph.except.ClientError;
 import org.zerograph.except.ServerError;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 public class NodeSetResource extends AbstractResource implements ResourceInterface {
 
     final private static String NAME = "NodeSet";
 
-    public NodeSetResource(ResponderInterface responder) {
+    final public static int DEFAULT_MAX_CREATE_COUNT = 1000000;
+
+    final private CursorSet cursors;
+    final private int maxCreateCount;
+
+    public NodeSetResource(ResponderInterface responder, CursorSet cursors, int maxCreateCount) {
         super(responder);
+        this.cursors = cursors;
+        this.maxCreateCount = maxCreateCount;
+    }
+
+    public NodeSetResource(ResponderInterface responder, CursorSet cursors) {
+        this(responder, cursors, DEFAULT_MAX_CREATE_COUNT);
+    }
+
+    public NodeSetResource(ResponderInterface responder) {
+        this(responder, new CursorSet());
     }
 
     public String getName() {
@@ -26,38 +48,142 @@ public class NodeSetResource extends AbstractResource implements ResourceInterfa
     /**
      * GET NodeSet {"label": …}
      * GET NodeSet {"label": …, "key": …, "value": …}
+     * GET NodeSet {"label": …, "key": …, "value": …, "skip": …, "limit": …}
+     * GET NodeSet {"cursor": …, "limit": …}
      *
      * Fetch all nodes that have the specified label and, optionally, property.
+     * If a limit is given, only one page of nodes is returned and the foot
+     * holds a cursor from which the next page can be fetched. A cursor given
+     * without a limit returns all remaining nodes. The cursor keeps the
+     * match open between pages, so each page carries on where the last
+     * one ended.
      *
      */
     @Override
     public PropertyContainer get(RequestInterface request, DatabaseInterface context) throws ClientError, ServerError {
-        String labelName = request.getArgumentAsString("label");
-        String key = request.getArgumentAsString("key", null);
-        Object value = request.getArgument("value", null);
-        HashMap<String, Object> stats = new HashMap<>();
-        Iterable<Node> result = context.matchNodeSet(labelName, key, value);
-        Node first = responder.sendNodes(result);
-        responder.sendFoot(stats);
-        return first;
+        Long limit = getLimit(request);
+        Cursor cursor = getCursor(request, cursors);
+        if (cursor == null) {
+            String labelName = request.getArgumentAsString("label");
+            String key = request.getArgumentAsString("key", null);
+            Object value = request.getArgument("value", null);
+            if (limit == null) {
+                HashMap<String, Object> stats = new HashMap<>();
+                Node first = responder.sendNodes(context.matchNodeSet(labelName, key, value));
+                responder.sendFoot(stats);
+                return first;
+            }
+            cursor = openCursor(cursors, context);
+            try {
+                Iterator<Node> nodes = context.matchNodeSet(labelName, key, value).iterator();
+                cursor.setItems(nodes);
+                skip(nodes, request.getArgumentAsLong("skip", 0L));
+            } catch (RuntimeException ex) {
+                cursors.close(cursor);
+                throw ex;
+            }
+        }
+        return sendPage(cursor, cursors, limit);
     }
 
     /**
      * PATCH NodeSet {"label": …, "key": …, "value": …}
+     * PATCH NodeSet {"label": …, "key": …, "values": [value, …]}
      *
-     * Ensure at least one node exists with the specified criteria.
+     * Ensure at least one node exists with the specified criteria. Given a
+     * list of values, one node is merged for each and only the ID of each
+     * node is returned, as a single list in the same order as the values.
      *
      */
     @Override
     public PropertyContainer patch(RequestInterface request, DatabaseInterface context) throws ClientError, ServerError {
         String labelName = request.getArgumentAsString("label");
         String key = request.getArgumentAsString("key");
-        Object value = request.getArgument("value");
-        Iterable<Node> result = context.mergeNodeSet(labelName, key, value);
-        Node first = responder.sendNodes(result);
+        List values = request.getArgumentAsList("values", null);
+        if (values == null) {
+            Object value = request.getArgument("value");
+            if (value == null) {
+                throw new ClientError("Cannot merge on a null value");
+            }
+            Iterable<Node> result;
+            try {
+                result = context.mergeNodeSet(labelName, key, value);
+            } catch (DeadlockDetectedException ex) {
+                throw new ServerError(ex.getMessage());
+            }
+            Node first = responder.sendNodes(result);
+            HashMap<String, Object> stats = new HashMap<>();
+            responder.sendFoot(stats);
+            return first;
+        } else {
+            if (values.contains(null)) {
+                throw new ClientError("Cannot merge on a null value");
+            }
+            long[] ids = new long[values.size()];
+            int created;
+            try {
+                created = context.mergeNodes(labelName, key, values, ids);
+            } catch (DeadlockDetectedException ex) {
+                throw new ServerError(ex.getMessage());
+            }
+            responder.sendBody(ids);
+            HashMap<String, Object> stats = new HashMap<>();
+            stats.put("nodes_created", created);
+            responder.sendFoot(stats);
+            if (ids.length > 0) {
+                return context.getNode(ids[0]);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * CREATE NodeSet {"labels": …, "properties": {key: [value, …], …}}
+     * CREATE NodeSet {"labels": …, "count": …}
+     *
+     * Create a batch of nodes that share the same labels. Properties are
+     * supplied as columns holding one value per node (null for none). Only
+     * the IDs of the new nodes are returned, as a single list. No more than
+     * nodes.max_create_count nodes can be created by one request.
+     *
+     */
+    @Override
+    public PropertyContainer create(RequestInterface request, DatabaseInterface context) throws ClientError, ServerError {
+        List labelNames = request.getArgumentAsList("labels", new ArrayList());
+        Map<String, Object> properties = request.getArgumentAsMap("properties", new HashMap<String, Object>());
+        Integer count = request.getArgumentAsInteger("count", null);
+        if (count != null && count < 0) {
+            throw new ClientError("Cannot create a negative number of nodes");
+        }
+        HashMap<String, List> columns = new HashMap<>(properties.size());
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!(entry.getValue() instanceof List)) {
+                throw new ClientError("Property column " + entry.getKey() + " is not a list");
+            }
+            List column = (List) entry.getValue();
+            if (count == null) {
+                count = column.size();
+            } else if (column.size() != count) {
+                throw new ClientError("Property column " + entry.getKey() + " does not have " + count + " values");
+            }
+            columns.put(entry.getKey(), column);
+        }
+        if (count == null) {
+            throw new ClientError("Either count or properties must be specified");
+        } else if (count > maxCreateCount) {
+            throw new ClientError("Cannot create more than " + maxCreateCount + " nodes in one request");
+        }
+        long[] ids = context.createNodes(labelNames, columns, count);
+        responder.sendBody(ids);
         HashMap<String, Object> stats = new HashMap<>();
+        stats.put("nodes_created", ids.length);
         responder.sendFoot(stats);
-        return first;
+        if (ids.length > 0) {
+            return context.getNode(ids[0]);
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -1,8 +1,11 @@
 package org.zerograph.resources;
 
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
+import org.zerograph.Cursor;
+import org.zerograph.CursorSet;
 import org.zerograph.api.DatabaseInterface;
 import org.zerograph.api.RequestInterface;
 import org.zerograph.api.ResourceInterface;
@@ -10,12 +13,24 @@ import org.zerograph.api.ResponderInterface;
 import org.zerograph.except.ClientError;
 import org.zerograph.except.ServerError;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 public class RelSetResource extends AbstractResource implements ResourceInterface {
 
     final private static String NAME = "RelSet";
 
-    public RelSetResource(ResponderInterface responder) {
+    final private CursorSet cursors;
+
+    public RelSetResource(ResponderInterface responder, CursorSet cursors) {
         super(responder);
+        this.cursors = cursors;
+    }
+
+    public RelSetResource(ResponderInterface responder) {
+        this(responder, new CursorSet());
     }
 
     public String getName() {
@@ -29,15 +44,38 @@ public class RelSetResource extends AbstractResource implements ResourceInterfac
      * GET RelSet {"start": …, "type": …}
      * GET RelSet {"end": …, "type": …}
      * GET RelSet {"start": …, "end": …, "type": …}
+     * GET RelSet {"start": …, "end": …, "type": …, "skip": …, "limit": …}
+     * GET RelSet {"cursor": …, "limit": …}
+     *
+     * If a limit is given, only one page of relationships is returned and
+     * the foot holds a cursor from which the next page can be fetched. A
+     * cursor given without a limit returns all remaining relationships.
+     * The cursor keeps the match open between pages, so each page carries
+     * on where the last one ended.
      *
      */
     @Override
     public PropertyContainer get(RequestInterface request, DatabaseInterface context) throws ClientError, ServerError {
-        Node startNode = resolveNode(context, request.getArgument("start", null));
-        Node endNode = resolveNode(context, request.getArgument("end", null));
-        String type = request.getArgumentAsString("type", null);
-        Iterable<Relationship> result = context.matchRelationshipSet(startNode, endNode, type);
-        return responder.sendRelationships(result);
+        Long limit = getLimit(request);
+        Cursor cursor = getCursor(request, cursors);
+        if (cursor == null) {
+            Node startNode = resolveNode(context, request.getArgument("start", null));
+            Node endNode = resolveNode(context, request.getArgument("end", null));
+            String type = request.getArgumentAsString("type", null);
+            if (limit == null) {
+                return responder.sendRelationships(context.matchRelationshipSet(startNode, endNode, type));
+            }
+            cursor = openCursor(cursors, context);
+            try {
+                Iterator<Relationship> relationships = context.matchRelationshipSet(startNode, endNode, type).iterator();
+                cursor.setItems(relationships);
+                skip(relationships, request.getArgumentAsLong("skip", 0L));
+            } catch (RuntimeException ex) {
+                cursors.close(cursor);
+                throw ex;
+            }
+        }
+        return sendPage(cursor, cursors, limit);
     }
 
     /**
@@ -55,6 +93,49 @@ public class RelSetResource extends AbstractResource implements ResourceInterfac
         return responder.sendRelationships(result);
     }
 
+    /**
+     * CREATE RelSet {"start": […], "end": […], "type": …}
+     * CREATE RelSet {"start": […], "end": […], "type": …, "properties": {key: [value, …], …}}
+     *
+     * Create a batch of relationships of a single type from parallel lists
+     * of start and end node IDs. Properties are supplied as columns holding
+     * one value per relationship (null for none). Only the number of
+     * relationships created is returned.
+     *
+     */
+    @Override
+    public PropertyContainer create(RequestInterface request, DatabaseInterface context) throws ClientError, ServerError {
+        long[] startNodeIds = toIdArray("start", request.getArgumentAsList("start"));
+        long[] endNodeIds = toIdArray("end", request.getArgumentAsList("end"));
+        if (startNodeIds.length != endNodeIds.length) {
+            throw new ClientError("Start and end node lists must be the same length");
+        }
+        String type = request.getArgumentAsString("type");
+        Map<String, Object> properties = request.getArgumentAsMap("properties", new HashMap<String, Object>());
+        HashMap<String, List> columns = new HashMap<>(properties.size());
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!(entry.getValue() instanceof List)) {
+                throw new ClientError("Property column " + entry.getKey() + " is not a list");
+            }
+            List column = (List) entry.getValue();
+            if (column.size() != startNodeIds.length) {
+                throw new ClientError("Property column " + entry.getKey() + " does not have " + startNodeIds.length + " values");
+            }
+            columns.put(entry.getKey(), column);
+        }
+        int count;
+        try {
+            count = context.createRelationships(startNodeIds, endNodeIds, type, columns);
+        } catch (NotFoundException ex) {
+            throw new ClientError(ex.getMessage());
+        }
+        responder.sendBody(count);
+        HashMap<String, Object> stats = new HashMap<>();
+        stats.put("relationships_created", count);
+        responder.sendFoot(stats);
+        return null;
+    }
+
     /**
      * DELETE RelSet {"start": …}
      * DELETE RelSet {"end": …}
@@ -73,4 +154,17 @@ public class RelSetResource extends AbstractResource implements ResourceInterfac
         return responder.sendRelationships(result);
     }
 
+    private long[] toIdArray(String name, List values) throws ClientError {
+        long[] ids = new long[values.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object value = values.get(i);
+            if (value instanceof Integer || value instanceof Long) {
+                ids[i] = ((Number) value).longValue();
+            } else {
+                throw new ClientError("Cannot resolve node " + value + " in " + name + " list");
+            }
+        }
+        return ids;
+    }
+
 }
@@ -1,7 +1,7 @@
 package org.zerograph.util;
 
-import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.zerograph.CypherEngine;
 import org.zerograph.Statistics;
 
 import java.util.Iterator;
@@ -9,9 +9,9 @@ import java.util.Map;
 
 public class IterableExecutor<T> {
 
-    final private ExecutionEngine engine;
+    final private CypherEngine engine;
 
-    public IterableExecutor(ExecutionEngine engine) {
+    public IterableExecutor(CypherEngine engine) {
         this.engine = engine;
 
     }
@@ -2,11 +2,27 @@ package org.zerograph.util;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Server log. Messages are placed in a fixed-size ring buffer without
+ * locking and written out to stdout by a background thread, so that
+ * workers never wait on the console. If the buffer is full, messages are
+ * dropped and a count of those dropped is logged once space is available.
+ * The writer parks while the buffer is empty and is woken by the next
+ * message, so only the first message after an idle spell pays for an
+ * unpark.
+ *
+ * Each message tag belongs to a level and only messages at or above the
+ * current level are logged. The SEND and RECEIVE tags used for every line
+ * of every request and response are at TRACE level, which is off by
+ * default.
+ */
 public class Log {
 
-    final public static SimpleDateFormat DAY_FORMAT = new SimpleDateFormat("E");
-    final public static SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss");
+    public enum Level { TRACE, INFO, WARNING, ERROR }
 
     final public static String INFO = "---";
     final public static String SEND = ">>>";
@@ -14,14 +30,175 @@ public class Log {
     final public static String WARNING = "~~~";
     final public static String ERROR = "!!!";
 
+    final private static int CAPACITY = 8192;  // must be a power of two
+    final private static long IDLE_PARK_TIME = 1000000000;  // nanoseconds, in case a wakeup is missed
+
+    final private static ThreadLocal<SimpleDateFormat> DAY_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("E");
+        }
+    };
+    final private static ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("HH:mm:ss");
+        }
+    };
+
+    final private static AtomicReferenceArray<Entry> buffer = new AtomicReferenceArray<>(CAPACITY);
+    final private static AtomicLong head = new AtomicLong();  // next slot to claim
+    final private static AtomicLong dropped = new AtomicLong();
+    private static volatile long tail = 0;  // next slot to write out, owned by the writer
+    private static volatile boolean idle = false;  // writer is parked, or about to park
+
+    private static volatile Level level = Level.INFO;
+
+    private static class Entry {
+
+        final long time;
+        final String threadName;
+        final String tag;
+        final String message;
+
+        Entry(long time, String threadName, String tag, String message) {
+            this.time = time;
+            this.threadName = threadName;
+            this.tag = tag;
+            this.message = message;
+        }
+
+    }
+
+    final private static Thread writer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                if (drain() == 0) {
+                    idle = true;
+                    // a message claimed after this check will see the idle
+                    // flag and unpark us
+                    if (head.get() == tail) {
+                        LockSupport.parkNanos(IDLE_PARK_TIME);
+                    }
+                    idle = false;
+                }
+            }
+        }
+    });
+
+    static {
+        writer.setName("log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }));
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level level) {
+        Log.level = level;
+    }
+
+    public static Level levelOf(String tag) {
+        switch (tag) {
+            case SEND:
+            case RECEIVE:
+                return Level.TRACE;
+            case WARNING:
+                return Level.WARNING;
+            case ERROR:
+                return Level.ERROR;
+            default:
+                return Level.INFO;
+        }
+    }
+
+    /**
+     * Check whether messages with a given tag are currently logged. Callers
+     * should check this before building any message that is costly to
+     * produce.
+     *
+     */
+    public static boolean isEnabled(String tag) {
+        return levelOf(tag).compareTo(level) >= 0;
+    }
+
     public static void write(String message) {
         write(message, INFO);
     }
 
     public static void write(String message, String tag) {
-        String threadName = Thread.currentThread().getName();
-        Date now = new Date();
-        System.out.println(String.format("%s %s %s %s %s", DAY_FORMAT.format(now).substring(0, 2), TIME_FORMAT.format(now), threadName, tag, message));
+        if (isEnabled(tag)) {
+            offer(new Entry(System.currentTimeMillis(), Thread.currentThread().getName(), tag, message));
+        }
+    }
+
+    private static void offer(Entry entry) {
+        while (true) {
+            long slot = head.get();
+            if (slot - tail >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (head.compareAndSet(slot, slot + 1)) {
+                buffer.set((int) slot & (CAPACITY - 1), entry);
+                if (idle) {
+                    LockSupport.unpark(writer);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write out all messages currently in the buffer. Only the writer
+     * thread (or the shutdown hook, once that thread has stopped) may call
+     * this.
+     *
+     * @return the number of messages written
+     */
+    private static synchronized int drain() {
+        StringBuilder out = new StringBuilder();
+        int count = 0;
+        long slot = tail;
+        while (slot < head.get()) {
+            int index = (int) slot & (CAPACITY - 1);
+            Entry entry = buffer.get(index);
+            if (entry == null) {
+                break;  // claimed but not yet filled
+            }
+            buffer.set(index, null);
+            slot += 1;
+            tail = slot;
+            format(out, entry);
+            count += 1;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            format(out, new Entry(System.currentTimeMillis(), "log", WARNING, lost + " log messages dropped"));
+        }
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+        }
+        return count;
+    }
+
+    private static void format(StringBuilder out, Entry entry) {
+        Date time = new Date(entry.time);
+        out.append(DAY_FORMAT.get().format(time), 0, 2).append(' ');
+        out.append(TIME_FORMAT.get().format(time)).append(' ');
+        out.append(entry.threadName).append(' ');
+        out.append(entry.tag).append(' ');
+        out.append(entry.message).append('\n');
     }
 
 }
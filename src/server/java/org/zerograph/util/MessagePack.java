@@ -0,0 +1,423 @@
+package org.zerograph.util;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.zerograph.CypherEngine;
+import org.zerograph.Graph;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A MessagePack encoder that writes into a reusable, growable byte array.
+ * Graph entities are written directly from their PropertyContainer as
+ * extension types, with no intermediate maps or strings:
+ *
+ *   Node  (ext 1) - [id, [label, …], {key: value, …}]
+ *   Rel   (ext 2) - [id, type, {key: value, …}]
+ *   Rev   (ext 3) - [id, type, {key: value, …}]
+ *   Path  (ext 4) - [Node, Rel|Rev, Node, …]
+ *   Graph (ext 5) - {"host": …, "port": …, "open": …, "plan_cache": …,
+ *                    "token_cache": …, "workers": …}
+ *
+ * As in the YAML encoding, a lone Relationship is written as a Path of
+ * its start node, the relationship and its end node.
+ */
+public class MessagePack {
+
+    final public static byte NODE = 1;
+    final public static byte REL = 2;
+    final public static byte REV = 3;
+    final public static byte PATH = 4;
+    final public static byte GRAPH = 5;
+
+    private byte[] buffer;
+    private int size;
+
+    public MessagePack(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Discard everything written after the given size, such as a partly
+     * written value.
+     *
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IllegalArgumentException("Cannot truncate to " + size + " bytes");
+        }
+        this.size = size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void pack(Object data) {
+        if (data == null) {
+            packNil();
+        } else if (data instanceof Boolean) {
+            packBoolean((Boolean) data);
+        } else if (data instanceof Double || data instanceof Float) {
+            packDouble(((Number) data).doubleValue());
+        } else if (data instanceof Number) {
+            packLong(((Number) data).longValue());
+        } else if (data instanceof String) {
+            packString((String) data);
+        } else if (data instanceof Character) {
+            packString(data.toString());
+        } else if (data instanceof Node) {
+            packNode((Node) data);
+        } else if (data instanceof Relationship) {
+            packRelationship((Relationship) data);
+        } else if (data instanceof Path) {
+            packPath((Path) data);
+        } else if (data instanceof Graph) {
+            packGraph((Graph) data);
+        } else if (data instanceof Collection) {
+            Collection collection = (Collection) data;
+            packArrayHeader(collection.size());
+            for (Object item : collection) {
+                pack(item);
+            }
+        } else if (data instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) data;
+            packMapHeader(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                packString(entry.getKey().toString());
+                pack(entry.getValue());
+            }
+        } else if (data instanceof Object[]) {
+            Object[] array = (Object[]) data;
+            packArrayHeader(array.length);
+            for (Object item : array) {
+                pack(item);
+            }
+        } else if (data instanceof boolean[]) {
+            boolean[] array = (boolean[]) data;
+            packArrayHeader(array.length);
+            for (boolean item : array) {
+                packBoolean(item);
+            }
+        } else if (data instanceof byte[]) {
+            byte[] array = (byte[]) data;
+            packArrayHeader(array.length);
+            for (byte item : array) {
+                packLong(item);
+            }
+        } else if (data instanceof short[]) {
+            short[] array = (short[]) data;
+            packArrayHeader(array.length);
+            for (short item : array) {
+                packLong(item);
+            }
+        } else if (data instanceof int[]) {
+            int[] array = (int[]) data;
+            packArrayHeader(array.length);
+            for (int item : array) {
+                packLong(item);
+            }
+        } else if (data instanceof long[]) {
+            long[] array = (long[]) data;
+            packArrayHeader(array.length);
+            for (long item : array) {
+                packLong(item);
+            }
+        } else if (data instanceof float[]) {
+            float[] array = (float[]) data;
+            packArrayHeader(array.length);
+            for (float item : array) {
+                packDouble(item);
+            }
+        } else if (data instanceof double[]) {
+            double[] array = (double[]) data;
+            packArrayHeader(array.length);
+            for (double item : array) {
+                packDouble(item);
+            }
+        } else if (data instanceof char[]) {
+            char[] array = (char[]) data;
+            packArrayHeader(array.length);
+            for (char item : array) {
+                packString(String.valueOf(item));
+            }
+        } else {
+            throw new IllegalArgumentException("Unpackable type: " + data.getClass().getName());
+        }
+    }
+
+    public void packNil() {
+        ensure(1);
+        buffer[size++] = (byte) 0xC0;
+    }
+
+    public void packBoolean(boolean data) {
+        ensure(1);
+        buffer[size++] = (byte) (data ? 0xC3 : 0xC2);
+    }
+
+    public void packLong(long data) {
+        ensure(9);
+        if (data >= 0 && data < 128) {
+            buffer[size++] = (byte) data;
+        } else if (data < 0 && data >= -32) {
+            buffer[size++] = (byte) data;
+        } else if (data >= Integer.MIN_VALUE && data <= Integer.MAX_VALUE) {
+            buffer[size++] = (byte) 0xD2;
+            putInt((int) data);
+        } else {
+            buffer[size++] = (byte) 0xD3;
+            putInt((int) (data >>> 32));
+            putInt((int) data);
+        }
+    }
+
+    public void packDouble(double data) {
+        ensure(9);
+        long bits = Double.doubleToLongBits(data);
+        buffer[size++] = (byte) 0xCB;
+        putInt((int) (bits >>> 32));
+        putInt((int) bits);
+    }
+
+    public void packString(String data) {
+        int length = data.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (data.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            packStringHeader(length);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[size++] = (byte) data.charAt(i);
+            }
+        } else {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            packStringHeader(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+    }
+
+    private void packStringHeader(int length) {
+        ensure(5);
+        if (length < 32) {
+            buffer[size++] = (byte) (0xA0 | length);
+        } else if (length < 0x100) {
+            buffer[size++] = (byte) 0xD9;
+            buffer[size++] = (byte) length;
+        } else if (length < 0x10000) {
+            buffer[size++] = (byte) 0xDA;
+            buffer[size++] = (byte) (length >>> 8);
+            buffer[size++] = (byte) length;
+        } else {
+            buffer[size++] = (byte) 0xDB;
+            putInt(length);
+        }
+    }
+
+    public void packArrayHeader(int length) {
+        ensure(5);
+        if (length < 16) {
+            buffer[size++] = (byte) (0x90 | length);
+        } else {
+            buffer[size++] = (byte) 0xDD;
+            putInt(length);
+        }
+    }
+
+    public void packMapHeader(int length) {
+        ensure(5);
+        if (length < 16) {
+            buffer[size++] = (byte) (0x80 | length);
+        } else {
+            buffer[size++] = (byte) 0xDF;
+            putInt(length);
+        }
+    }
+
+    public void packNode(Node data) {
+        int ext = beginExt(NODE);
+        packArrayHeader(3);
+        packLong(data.getId());
+        int labels = beginArray();
+        int labelCount = 0;
+        for (Label label : data.getLabels()) {
+            packString(label.name());
+            labelCount += 1;
+        }
+        endArray(labels, labelCount);
+        packProperties(data);
+        endExt(ext);
+    }
+
+    public void packRelationship(Relationship data) {
+        int ext = beginExt(PATH);
+        packArrayHeader(3);
+        packNode(data.getStartNode());
+        packRel(data, REL);
+        packNode(data.getEndNode());
+        endExt(ext);
+    }
+
+    public void packPath(Path data) {
+        int ext = beginExt(PATH);
+        int entities = beginArray();
+        int entityCount = 0;
+        Node node = null;
+        for (PropertyContainer entity : data) {
+            if (entity instanceof Node) {
+                node = (Node) entity;
+                packNode(node);
+                entityCount += 1;
+            } else if (entity instanceof Relationship) {
+                Relationship rel = (Relationship) entity;
+                if (node != null) {
+                    long nodeID = node.getId();
+                    if (rel.getStartNode().getId() != nodeID && rel.getEndNode().getId() == nodeID) {
+                        packRel(rel, REV);
+                    } else {
+                        packRel(rel, REL);
+                    }
+                    entityCount += 1;
+                }
+            }
+        }
+        endArray(entities, entityCount);
+        endExt(ext);
+    }
+
+    public void packGraph(Graph data) {
+        int ext = beginExt(GRAPH);
+        CypherEngine engine = data.getEngine();  // null unless the database is open
+        packMapHeader(6);
+        packString("host");
+        packString(data.getHost());
+        packString("port");
+        packLong(data.getPort());
+        packString("open");
+        packBoolean(engine != null);
+        packString("plan_cache");
+        packMapHeader(2);
+        packString("hits");
+        packLong(engine == null ? 0 : engine.getPlanCacheHits());
+        packString("misses");
+        packLong(engine == null ? 0 : engine.getPlanCacheMisses());
+        packString("token_cache");
+        packMapHeader(2);
+        packString("hits");
+        packLong(data.getTokens().getHits());
+        packString("misses");
+        packLong(data.getTokens().getMisses());
+        packString("workers");
+        packMapHeader(3);
+        packString("min");
+        packLong(data.getMinWorkers());
+        packString("max");
+        packLong(data.getMaxWorkers());
+        packString("count");
+        packLong(data.getWorkerCount());
+        endExt(ext);
+    }
+
+    private void packRel(Relationship data, byte type) {
+        int ext = beginExt(type);
+        packArrayHeader(3);
+        packLong(data.getId());
+        packString(data.getType().name());
+        packProperties(data);
+        endExt(ext);
+    }
+
+    private void packProperties(PropertyContainer entity) {
+        int map = beginMap();
+        int count = 0;
+        for (String key : entity.getPropertyKeys()) {
+            packString(key);
+            pack(entity.getProperty(key));
+            count += 1;
+        }
+        endMap(map, count);
+    }
+
+    // Containers whose length is not known until written reserve a 32-bit
+    // header and patch it afterwards; MessagePack permits non-minimal sizes.
+
+    private int beginArray() {
+        ensure(5);
+        int position = size;
+        buffer[size++] = (byte) 0xDD;
+        size += 4;
+        return position;
+    }
+
+    private void endArray(int position, int count) {
+        patchInt(position + 1, count);
+    }
+
+    private int beginMap() {
+        ensure(5);
+        int position = size;
+        buffer[size++] = (byte) 0xDF;
+        size += 4;
+        return position;
+    }
+
+    private void endMap(int position, int count) {
+        patchInt(position + 1, count);
+    }
+
+    private int beginExt(byte type) {
+        ensure(6);
+        int position = size;
+        buffer[size++] = (byte) 0xC9;
+        size += 4;
+        buffer[size++] = type;
+        return position;
+    }
+
+    private void endExt(int position) {
+        patchInt(position + 1, size - position - 6);
+    }
+
+    private void putInt(int value) {
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void patchInt(int position, int value) {
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+}
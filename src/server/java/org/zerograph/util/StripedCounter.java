@@ -0,0 +1,44 @@
+package org.zerograph.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into a fixed set of stripes, each updated only by the
+ * threads whose ID falls into it. This keeps frequently updated counts
+ * shared between workers from contending on a single cache line, at the
+ * cost of summing all stripes on every read.
+ *
+ */
+public class StripedCounter {
+
+    final public static int DEFAULT_STRIPES = 16;
+
+    // stripes are spaced out so that no two share a cache line
+    final private static int PADDING = 8;
+
+    final private int stripes;
+    final private AtomicLongArray counts;
+
+    public StripedCounter(int stripes) {
+        this.stripes = stripes;
+        this.counts = new AtomicLongArray(stripes * PADDING);
+    }
+
+    public StripedCounter() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public void increment() {
+        int stripe = (int) (Thread.currentThread().getId() % stripes);
+        counts.incrementAndGet(stripe * PADDING);
+    }
+
+    public long get() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += counts.get(i * PADDING);
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.zerograph.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared between workers, each guarding all keys
+ * whose hash falls into its stripe. This bounds the memory used for
+ * locking arbitrary values at the cost of occasional false contention.
+ *
+ */
+public class StripedLock {
+
+    final public static int DEFAULT_STRIPES = 256;
+
+    final private ReentrantLock[] locks;
+
+    public StripedLock(int stripes) {
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    public StripedLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public int stripe(int hash) {
+        hash ^= (hash >>> 16);
+        return (hash & 0x7FFFFFFF) % locks.length;
+    }
+
+    /**
+     * Acquire the lock for a stripe, waiting for no longer than the
+     * timeout given.
+     *
+     * @return the lock, or null if it could not be acquired in time
+     */
+    public ReentrantLock tryLock(int stripe, long timeout) throws InterruptedException {
+        ReentrantLock lock = locks[stripe];
+        if (lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+            return lock;
+        } else {
+            return null;
+        }
+    }
+
+}
@@ -1,240 +1,392 @@
 package org.zerograph.util;
 
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.ObjectWriter;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
+import org.zerograph.CypherEngine;
 import org.zerograph.Graph;
 
 import java.io.IOException;
 import java.util.*;
 
-import static org.zerograph.util.Toolbox.labelNameSet;
-import static org.zerograph.util.Toolbox.propertyMap;
-
+/**
+ * Writes values in the flow-style YAML used by ZAPP responses. All output
+ * is appended directly to the Appendable supplied so that a response line
+ * can be built in a single reusable buffer; the dump methods are
+ * conveniences that return a String.
+ */
 public class YAML {
 
-    final private static ObjectMapper MAPPER = new ObjectMapper();
-    final private static ObjectWriter STRING_WRITER = MAPPER.writerWithType(String.class);
+    final private static char[] HEX = "0123456789abcdef".toCharArray();
 
     public static String dump(Object data) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            write(builder, data);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);  // StringBuilder does not throw
+        }
+        return builder.toString();
+    }
+
+    public static String dump(Boolean data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Integer data) {
+        return Integer.toString(data);
+    }
+
+    public static String dump(Long data) {
+        return Long.toString(data);
+    }
+
+    public static String dump(Double data) {
+        return Double.toString(data);
+    }
+
+    public static String dump(String data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(List data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Set data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Map data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Graph data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Node data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Relationship data) {
+        return dump((Object) data);
+    }
+
+    public static String dump(Path data) {
+        return dump((Object) data);
+    }
+
+    public static void write(Appendable out, Object data) throws IOException {
         if (data == null) {
-            return "null";
+            out.append("null");
         } else if (data instanceof Boolean) {
-            return dump((Boolean) data);
-        } else if (data instanceof Integer) {
-            return dump((Integer) data);
-        } else if (data instanceof Long) {
-            return dump((Long) data);
-        } else if (data instanceof Double) {
-            return dump((Double) data);
+            out.append((Boolean) data ? "true" : "false");
+        } else if (data instanceof Integer || data instanceof Long || data instanceof Short || data instanceof Byte) {
+            writeLong(out, ((Number) data).longValue());
+        } else if (data instanceof Double || data instanceof Float) {
+            writeDouble(out, ((Number) data).doubleValue());
         } else if (data instanceof String) {
-            return dump((String) data);
+            writeString(out, (String) data);
+        } else if (data instanceof Character) {
+            writeString(out, data.toString());
         } else if (data instanceof boolean[]) {
-            boolean[] arrayData = (boolean[]) data;
-            ArrayList<Boolean> values = new ArrayList<>(arrayData.length);
-            for (boolean value : arrayData) {
-                values.add(value);
+            boolean[] array = (boolean[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(array[i] ? "true" : "false");
+            }
+            out.append(']');
+        } else if (data instanceof byte[]) {
+            byte[] array = (byte[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeLong(out, array[i]);
             }
-            return dump(values);
+            out.append(']');
+        } else if (data instanceof short[]) {
+            short[] array = (short[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeLong(out, array[i]);
+            }
+            out.append(']');
         } else if (data instanceof int[]) {
-            int[] arrayData = (int[]) data;
-            ArrayList<Integer> values = new ArrayList<>(arrayData.length);
-            for (int value : arrayData) {
-                values.add(value);
+            int[] array = (int[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeLong(out, array[i]);
             }
-            return dump(values);
+            out.append(']');
         } else if (data instanceof long[]) {
-            long[] arrayData = (long[]) data;
-            ArrayList<Long> values = new ArrayList<>(arrayData.length);
-            for (long value : arrayData) {
-                values.add(value);
+            long[] array = (long[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeLong(out, array[i]);
             }
-            return dump(values);
+            out.append(']');
+        } else if (data instanceof float[]) {
+            float[] array = (float[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeDouble(out, array[i]);
+            }
+            out.append(']');
         } else if (data instanceof double[]) {
-            double[] arrayData = (double[]) data;
-            ArrayList<Double> values = new ArrayList<>(arrayData.length);
-            for (double value : arrayData) {
-                values.add(value);
+            double[] array = (double[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeDouble(out, array[i]);
             }
-            return dump(values);
-        } else if (data instanceof Boolean[]) {
-            return dump(Arrays.asList((Boolean[]) data));
-        } else if (data instanceof Integer[]) {
-            return dump(Arrays.asList((Integer[]) data));
-        } else if (data instanceof Long[]) {
-            return dump(Arrays.asList((Long[]) data));
-        } else if (data instanceof Double[]) {
-            return dump(Arrays.asList((Double[]) data));
-        } else if (data instanceof String[]) {
-            return dump(Arrays.asList((String[]) data));
-        } else if (data instanceof List) {
-            return dump((List) data);
-        } else if (data instanceof Set) {
-            return dump((Set) data);
+            out.append(']');
+        } else if (data instanceof char[]) {
+            char[] array = (char[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeString(out, String.valueOf(array[i]));
+            }
+            out.append(']');
+        } else if (data instanceof Object[]) {
+            Object[] array = (Object[]) data;
+            out.append('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                write(out, array[i]);
+            }
+            out.append(']');
+        } else if (data instanceof Collection) {
+            writeCollection(out, (Collection) data);
         } else if (data instanceof Map) {
-            return dump((Map) data);
+            writeMap(out, (Map) data);
         } else if (data instanceof Node) {
-            return dump((Node) data);
+            out.append("!Node ");
+            writeNode(out, (Node) data);
         } else if (data instanceof Relationship) {
-            return dump((Relationship) data);
+            writeRelationship(out, (Relationship) data);
         } else if (data instanceof Path) {
-            return dump((Path) data);
+            writePath(out, (Path) data);
         } else if (data instanceof Graph) {
-            return dump((Graph) data);
+            writeGraph(out, (Graph) data);
         } else {
             throw new IllegalArgumentException("Unyamlable type: " + data.getClass().getName());
         }
     }
 
-    public static String dump(Boolean data) {
-        if (data == null) {
-            return "null";
-        } else if (data) {
-            return "true";
+    private static void writeLong(Appendable out, long value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
         } else {
-            return "false";
+            out.append(Long.toString(value));
         }
     }
 
-    public static String dump(Integer data) {
-        return Integer.toString(data);
-    }
-
-    public static String dump(Long data) {
-        return Long.toString(data);
-    }
-
-    public static String dump(Double data) {
-        return Double.toString(data);
+    private static void writeDouble(Appendable out, double value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+        } else {
+            out.append(Double.toString(value));
+        }
     }
 
-    public static String dump(String data) {
-        try {
-            return STRING_WRITER.writeValueAsString(data);
-        } catch (IOException ex) {
-            return '"' + data + '"';
+    /**
+     * Write a double-quoted string, escaped as a JSON string.
+     *
+     */
+    private static void writeString(Appendable out, String value) throws IOException {
+        out.append('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < 0x20 || ch == '"' || ch == '\\') {
+                out.append(value, start, i);
+                start = i + 1;
+                switch (ch) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    case '\b':
+                        out.append("\\b");
+                        break;
+                    case '\f':
+                        out.append("\\f");
+                        break;
+                    default:
+                        out.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+                }
+            }
         }
+        out.append(value, start, length);
+        out.append('"');
     }
 
-    public static String dump(List data) {
-        StringBuilder builder = new StringBuilder();
-        builder.append('[');
-        int count = 0;
+    private static void writeCollection(Appendable out, Collection data) throws IOException {
+        out.append('[');
+        boolean first = true;
         for (Object item : data) {
-            if (count > 0) {
-                builder.append(',');
+            if (!first) {
+                out.append(',');
             }
-            builder.append(dump(item));
-            count += 1;
+            write(out, item);
+            first = false;
         }
-        builder.append(']');
-        return builder.toString();
-    }
-
-    public static String dump(Set data) {
-        return dump(Arrays.asList(data.toArray()));
+        out.append(']');
     }
 
-    public static String dump(Map data) {
-        StringBuilder builder = new StringBuilder();
-        builder.append('{');
-        int count = 0;
-        for (Object key : data.keySet()) {
-            if (count > 0) {
-                builder.append(',');
+    private static void writeMap(Appendable out, Map<?, ?> data) throws IOException {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : data.entrySet()) {
+            if (!first) {
+                out.append(',');
             }
-            builder.append(dump(key.toString()));
-            builder.append(':');
-            builder.append(dump(data.get(key)));
-            count += 1;
+            writeString(out, entry.getKey().toString());
+            out.append(':');
+            write(out, entry.getValue());
+            first = false;
         }
-        builder.append('}');
-        return builder.toString();
+        out.append('}');
     }
 
-    public static String dump(Graph data) {
-        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>(2);
-        attributes.put("host", data.getHost());
-        attributes.put("port", data.getPort());
-        return "!Graph " + dump(attributes);
+    private static void writeGraph(Appendable out, Graph data) throws IOException {
+        out.append("!Graph {\"host\":");
+        writeString(out, data.getHost());
+        out.append(",\"port\":");
+        writeLong(out, data.getPort());
+        CypherEngine engine = data.getEngine();  // null unless the database is open
+        out.append(",\"open\":");
+        out.append(engine == null ? "false" : "true");
+        out.append(",\"plan_cache\":{\"hits\":");
+        writeLong(out, engine == null ? 0 : engine.getPlanCacheHits());
+        out.append(",\"misses\":");
+        writeLong(out, engine == null ? 0 : engine.getPlanCacheMisses());
+        out.append("},\"token_cache\":{\"hits\":");
+        writeLong(out, data.getTokens().getHits());
+        out.append(",\"misses\":");
+        writeLong(out, data.getTokens().getMisses());
+        out.append("},\"workers\":{\"min\":");
+        writeLong(out, data.getMinWorkers());
+        out.append(",\"max\":");
+        writeLong(out, data.getMaxWorkers());
+        out.append(",\"count\":");
+        writeLong(out, data.getWorkerCount());
+        out.append("}}");
     }
 
-    public static String dump(Node data) {
-        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>(3);
-        attributes.put("id", data.getId());
-        Set<String> labels = labelNameSet(data.getLabels());
-        if (labels.size() > 0) {
-            attributes.put("labels", labels);
+    private static void writeNode(Appendable out, Node data) throws IOException {
+        out.append("{\"id\":");
+        writeLong(out, data.getId());
+        boolean first = true;
+        for (Label label : data.getLabels()) {
+            out.append(first ? ",\"labels\":[" : ",");
+            writeString(out, label.name());
+            first = false;
         }
-        Map<String, Object> properties = propertyMap(data);
-        if (properties.size() > 0) {
-            attributes.put("properties", properties);
+        if (!first) {
+            out.append(']');
         }
-        return "!Node " + dump(attributes);
+        writeProperties(out, data);
+        out.append('}');
     }
 
-    public static String dump(Relationship data) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("!Path [");
-        builder.append(dump(data.getStartNode()));
-        builder.append(',');
-        builder.append(dumpRel(data));
-        builder.append(',');
-        builder.append(dump(data.getEndNode()));
-        builder.append(']');
-        return builder.toString();
+    private static void writeRelationship(Appendable out, Relationship data) throws IOException {
+        out.append("!Path [!Node ");
+        writeNode(out, data.getStartNode());
+        out.append(",!Rel ");
+        writeRel(out, data);
+        out.append(",!Node ");
+        writeNode(out, data.getEndNode());
+        out.append(']');
     }
 
-    public static String dump(Path data) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("!Path ");
+    private static void writePath(Appendable out, Path data) throws IOException {
+        out.append("!Path ");
         Node node = null;
         char link = '[';
         for (PropertyContainer entity : data) {
-            builder.append(link);
+            out.append(link);
             if (entity instanceof Node) {
                 node = (Node) entity;
-                builder.append(dump(node));
+                out.append("!Node ");
+                writeNode(out, node);
             } else if (entity instanceof Relationship) {
                 Relationship rel = (Relationship) entity;
                 if (node != null) {
                     long nodeID = node.getId();
                     if (rel.getStartNode().getId() != nodeID && rel.getEndNode().getId() == nodeID) {
-                        builder.append(dumpRev(rel));
+                        out.append("!Rev ");
                     } else {
-                        builder.append(dumpRel(rel));
+                        out.append("!Rel ");
                     }
+                    writeRel(out, rel);
                 }
             }
             link = ',';
         }
-        builder.append(']');
-        return builder.toString();
+        out.append(']');
     }
 
-    private static String dumpRel(Relationship data) {
-        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>(3);
-        attributes.put("id", data.getId());
-        attributes.put("type", data.getType().name());
-        Map<String, Object> properties = propertyMap(data);
-        if (properties.size() > 0) {
-            attributes.put("properties", properties);
-        }
-        return "!Rel " + dump(attributes);
+    private static void writeRel(Appendable out, Relationship data) throws IOException {
+        out.append("{\"id\":");
+        writeLong(out, data.getId());
+        out.append(",\"type\":");
+        writeString(out, data.getType().name());
+        writeProperties(out, data);
+        out.append('}');
     }
 
-    private static String dumpRev(Relationship data) {
-        LinkedHashMap<String, Object> attributes = new LinkedHashMap<>(3);
-        attributes.put("id", data.getId());
-        attributes.put("type", data.getType().name());
-        Map<String, Object> properties = propertyMap(data);
-        if (properties.size() > 0) {
-            attributes.put("properties", properties);
+    private static void writeProperties(Appendable out, PropertyContainer entity) throws IOException {
+        boolean first = true;
+        for (String key : entity.getPropertyKeys()) {
+            out.append(first ? ",\"properties\":{" : ",");
+            writeString(out, key);
+            out.append(':');
+            write(out, entity.getProperty(key));
+            first = false;
+        }
+        if (!first) {
+            out.append('}');
         }
-        return "!Rev " + dump(attributes);
     }
 
 }
@@ -0,0 +1,54 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.zerograph.CypherEngine;
+import org.zerograph.Database;
+
+public class CypherEngineTest {
+
+    protected GraphDatabaseService database;
+    protected CypherEngine engine;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        engine = new CypherEngine(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void testRepeatedQueryIsCountedAsHit() {
+        try (Transaction tx = database.beginTx()) {
+            engine.execute("RETURN 1");
+            engine.execute("RETURN 1");
+            engine.execute("RETURN 2");
+            tx.success();
+        }
+        assert engine.getPlanCacheHits() == 1;
+        assert engine.getPlanCacheMisses() == 2;
+    }
+
+    @Test
+    public void testEngineIsSharedAcrossTransactions() {
+        Database context = new Database(database, engine);
+        for (int i = 0; i < 3; i++) {
+            try (Transaction tx = database.beginTx()) {
+                context.setTransaction(tx);
+                context.execute("CREATE (a {name:'Alice'}) RETURN a");
+                tx.success();
+            }
+        }
+        assert engine.getPlanCacheHits() == 2;
+        assert engine.getPlanCacheMisses() == 1;
+    }
+
+}
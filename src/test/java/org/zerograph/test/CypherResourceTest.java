@@ -0,0 +1,125 @@
+package org.zerograph.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.zerograph.CursorSet;
+import org.zerograph.Request;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+import org.zerograph.resources.CypherResource;
+import org.zerograph.test.helpers.QuickMap;
+
+import java.util.Arrays;
+
+public class CypherResourceTest extends ResourceTest {
+
+    final private static String QUERY = "MATCH (a:Person) RETURN a.name ORDER BY a.name";
+
+    protected CursorSet cursors;
+    protected CypherResource resource;
+
+    @Before
+    public void createResource() {
+        cursors = new CursorSet();
+        resource = new CypherResource(responseCollector, cursors);
+        createNode(ALICE);
+        createNode(BOB);
+        commit();
+    }
+
+    @Test
+    public void testCanExecuteQuery() throws ClientError, ServerError {
+        Node node = createNode(ALICE);
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", "START a=node(" + node.getId() + ") RETURN a, 1"));
+        Object first = resource.execute(request, context);
+        assert first.equals(node);
+        assert responseCollector.getHead().get("columns").equals(Arrays.asList("a", "1"));
+        assert responseCollector.getBody().size() == 1;
+        assert responseCollector.getBody().get(0).equals(Arrays.asList(node, 1L));
+    }
+
+    @Test
+    public void testCanPageThroughResultWithCursor() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "limit", 1));
+        resource.execute(request, context);
+        assert responseCollector.getBody().equals(Arrays.asList(Arrays.asList("Alice")));
+        Object cursor = responseCollector.getFoot().get("cursor");
+        assert cursor != null;
+        request = new Request("EXECUTE", "Cypher", QuickMap.from("cursor", cursor, "limit", 1));
+        resource.execute(request, context);
+        assert responseCollector.getBody().equals(Arrays.asList(Arrays.asList("Alice"), Arrays.asList("Bob")));
+        assert responseCollector.getFoot().get("cursor") == null;
+        assert cursors.size() == 0;
+    }
+
+    @Test
+    public void testCursorWithoutLimitFetchesRemainingRows() throws ClientError, ServerError {
+        createNode(ALICE);
+        commit();
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "limit", 1));
+        resource.execute(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        request = new Request("EXECUTE", "Cypher", QuickMap.from("cursor", cursor));
+        resource.execute(request, context);
+        assert responseCollector.getBody().equals(Arrays.asList(
+                Arrays.asList("Alice"), Arrays.asList("Alice"), Arrays.asList("Bob")));
+        assert responseCollector.getFoot().get("cursor") == null;
+        assert cursors.size() == 0;
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotPageThroughUpdatingQuery() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", "CREATE (a:Person) RETURN a", "limit", 1));
+        resource.execute(request, context);
+    }
+
+    @Test
+    public void testCanSkipRows() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "skip", 1, "limit", 5));
+        resource.execute(request, context);
+        assert responseCollector.getBody().equals(Arrays.asList(Arrays.asList("Bob")));
+        assert responseCollector.getFoot().get("cursor") == null;
+    }
+
+    @Test
+    public void testPagesAreNotShiftedByLaterWrites() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "limit", 1));
+        resource.execute(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        Node aaron = createNode();
+        addLabels(aaron, Arrays.asList("Person"));
+        aaron.setProperty("name", "Aaron");
+        commit();
+        request = new Request("EXECUTE", "Cypher", QuickMap.from("cursor", cursor, "limit", 1));
+        resource.execute(request, context);
+        assert responseCollector.getBody().equals(Arrays.asList(Arrays.asList("Alice"), Arrays.asList("Bob")));
+    }
+
+    @Test
+    public void testBatchTransactionIsRestoredBetweenPages() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "limit", 1));
+        resource.execute(request, context);
+        createNode(ALICE);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        resource.delete(new Request("DELETE", "Cypher", QuickMap.from("cursor", cursor)), context);
+        createNode(BOB);
+        commit();
+    }
+
+    @Test
+    public void testCanCloseCursor() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("query", QUERY, "limit", 1));
+        resource.execute(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        resource.delete(new Request("DELETE", "Cypher", QuickMap.from("cursor", cursor)), context);
+        assert cursors.size() == 0;
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotUseUnknownCursor() throws ClientError, ServerError {
+        Request request = new Request("EXECUTE", "Cypher", QuickMap.from("cursor", 999, "limit", 1));
+        resource.execute(request, context);
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zerograph.Environment;
+import org.zerograph.Graph;
+import org.zerograph.test.helpers.ZappClient;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class GraphTest {
+
+    final private static int PORT = 47572;
+
+    private Graph graph;
+    private ZappClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        Environment.getInstance().setSetting(PORT + ".hibernation.idle_timeout", "200");
+        graph = Graph.open("localhost", PORT);
+        client = new ZappClient(PORT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        Graph.drop("localhost", PORT);
+    }
+
+    private long getOpenCount() {
+        Map<?, ?> database = (Map<?, ?>) graph.getMetrics().toMap().get("database");
+        return (Long) ((Map<?, ?>) database.get("open")).get("count");
+    }
+
+    private void awaitHibernation() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (graph.getEngine() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testDatabaseIsNotOpenedUntilFirstRequest() throws Exception {
+        assert graph.getEngine() == null;
+        assert getOpenCount() == 0;
+        client.call("GET NodeSet {\"label\":\"Person\"}\n");
+        assert getOpenCount() == 1;
+    }
+
+    @Test
+    public void testCursorContinuesInLaterBatch() throws Exception {
+        client.call("CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"Alice\"}}\n" +
+                    "CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"Bob\"}}\n" +
+                    "CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"Carol\"}}\n");
+        List<String> lines = client.call("EXECUTE Cypher {\"query\":\"MATCH (a:Person) RETURN a.name ORDER BY a.name\",\"limit\":2}\n");
+        assert lines.get(4).equals("foot: {\"cursor\":1}") : lines;
+        lines = client.call("CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"Aaron\"}}\n" +
+                            "EXECUTE Cypher {\"cursor\":1,\"limit\":2}\n");
+        assert ZappClient.errors(lines).isEmpty() : lines;
+        assert lines.contains("- [\"Carol\"]") && lines.contains("foot: {\"cursor\":null}") : lines;
+        assert graph.getCursors().size() == 0;
+    }
+
+    @Test
+    public void testRequestsAreTimedByDispatchedMethod() throws Exception {
+        client.call("GETX NodeSet {\"label\":\"Person\"}\n");
+        client.call("GET Node {\"id\":999}\n");
+        Map<?, ?> requests = (Map<?, ?>) graph.getMetrics().toMap().get("requests");
+        assert requests.keySet().equals(new HashSet<>(Arrays.asList("GET NodeSet", "GET Node"))) : requests;
+        Map<?, ?> timings = (Map<?, ?>) requests.get("GET Node");
+        assert timings.get("errors").equals(1L) : timings;
+        assert ((Map<?, ?>) timings.get("execution")).get("count").equals(0L) : timings;
+    }
+
+    @Test
+    public void testHibernatedGraphReopensOnNextRequest() throws Exception {
+        List<String> lines = client.call("CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"name\":\"Alice\"}}\n");
+        assert ZappClient.errors(lines).isEmpty() : lines;
+        awaitHibernation();
+        assert graph.getEngine() == null;
+        assert graph.getWorkerCount() == 0;
+        lines = client.call("GET NodeSet {\"label\":\"Person\",\"key\":\"name\",\"value\":\"Alice\"}\n");
+        assert ZappClient.errors(lines).isEmpty() : lines;
+        assert lines.get(1).startsWith("- !Node") && lines.get(1).contains("Alice") : lines;
+        assert graph.getEngine() != null;
+        assert getOpenCount() == 2;
+    }
+
+}
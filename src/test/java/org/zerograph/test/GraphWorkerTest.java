@@ -0,0 +1,128 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zerograph.Graph;
+import org.zerograph.test.helpers.ZappClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GraphWorkerTest {
+
+    final private static int PORT = 47571;
+
+    private Graph graph;
+    private ZappClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = Graph.open("localhost", PORT);
+        client = new ZappClient(PORT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        Graph.drop("localhost", PORT);
+    }
+
+    private static int countLines(List<String> lines, String prefix) {
+        int count = 0;
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    private long getCommitCount() {
+        Map<?, ?> batches = (Map<?, ?>) graph.getMetrics().toMap().get("batches");
+        return (Long) ((Map<?, ?>) batches.get("commit")).get("count");
+    }
+
+    private static String mergeBatch(List<String> names) {
+        StringBuilder batch = new StringBuilder();
+        for (String name : names) {
+            batch.append("PATCH NodeSet {\"label\":\"Person\",\"key\":\"name\",\"value\":\"").append(name).append("\"}\n");
+        }
+        return batch.toString();
+    }
+
+    @Test(timeout=60000)
+    public void testConcurrentMergesInOppositeOrdersDoNotDeadlock() throws Exception {
+        graph.setWorkerLimits(2, 2);
+        final ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("person" + i);
+        }
+        final ArrayList<String> reversed = new ArrayList<>(names);
+        Collections.reverse(reversed);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (final List<String> order : Arrays.asList(names, reversed)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (ZappClient client = new ZappClient(PORT)) {
+                        for (int i = 0; i < 20; i++) {
+                            List<String> errors = ZappClient.errors(client.call(mergeBatch(order)));
+                            if (!errors.isEmpty()) {
+                                failure.compareAndSet(null, errors.get(0));
+                            }
+                        }
+                    } catch (AssertionError ex) {
+                        failure.compareAndSet(null, ex.getMessage());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert failure.get() == null : failure.get();
+        List<String> lines = client.call("GET NodeSet {\"label\":\"Person\"}\n");
+        assert countLines(lines, "- !Node") == names.size();
+    }
+
+    @Test
+    public void testBulkBatchCommitsEachChunk() throws Exception {
+        String createNode = "CREATE Node {\"labels\":[\"Person\"],\"properties\":{}}\n";
+        String batch = "BULK 2\n" + createNode + createNode + createNode + createNode +
+                "CREATE Rel {\"start*\":0,\"end*\":3,\"type\":\"KNOWS\",\"properties\":{}}\n";
+        List<String> lines = client.call(batch);
+        assert ZappClient.errors(lines).isEmpty() : lines;
+        assert getCommitCount() == 3;
+        // the relationship, in the last chunk, joins nodes from the first and second
+        lines = client.call("EXECUTE Cypher {\"query\":\"MATCH (a)-[:KNOWS]->(b) RETURN id(a), id(b)\"}\n");
+        assert lines.contains("- [0,3]") : lines;
+    }
+
+    @Test
+    public void testFailedBulkChunkKeepsEarlierChunks() throws Exception {
+        String createNode = "CREATE Node {\"labels\":[\"Person\"],\"properties\":{}}\n";
+        String batch = "BULK 2\n" + createNode + createNode + createNode + "GET Node {\"id\":99999}\n";
+        assert ZappClient.errors(client.call(batch)).size() == 1;
+        assert getCommitCount() == 1;
+        List<String> lines = client.call("GET NodeSet {\"label\":\"Person\"}\n");
+        assert countLines(lines, "- !Node") == 2;
+    }
+
+    @Test
+    public void testReadOnlyBatchDoesNotCommit() throws Exception {
+        List<String> lines = client.call("GET NodeSet {\"label\":\"Person\"}\nGET NodeSet {\"label\":\"Place\"}\n");
+        assert ZappClient.errors(lines).isEmpty() : lines;
+        assert getCommitCount() == 0;
+        client.call("CREATE Node {\"labels\":[\"Person\"],\"properties\":{}}\n");
+        assert getCommitCount() == 1;
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.zerograph.test;
+
+import org.junit.Test;
+import org.zerograph.util.Histogram;
+
+public class HistogramTest {
+
+    @Test
+    public void testEmptyHistogramReadsAsZero() {
+        Histogram histogram = new Histogram();
+        assert histogram.getCount() == 0;
+        assert histogram.getMin() == 0;
+        assert histogram.getValueAtPercentile(99.0) == 0;
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assert histogram.getCount() == 10;
+        assert histogram.getMin() == 1;
+        assert histogram.getMax() == 10;
+        assert histogram.getValueAtPercentile(50.0) == 5;
+        assert histogram.getValueAtPercentile(100.0) == 10;
+        assert histogram.getMean() == 5.5;
+    }
+
+    @Test
+    public void testLargeValuesAreWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        long p99 = histogram.getValueAtPercentile(99.0);
+        assert p99 >= 99000 && p99 <= 99000 * 1.07;
+        assert histogram.getValueAtPercentile(100.0) == 100000;
+    }
+
+}
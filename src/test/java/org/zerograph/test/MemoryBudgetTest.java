@@ -0,0 +1,133 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.zerograph.MemoryBudget;
+import org.zerograph.util.Toolbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+public class MemoryBudgetTest {
+
+    final private static long MB = MemoryBudget.MEGABYTE;
+
+    private File small;
+    private File large;
+
+    private static File createStore(String name, long nodeStoreSize) throws IOException {
+        File directory = File.createTempFile(name, "");
+        assert directory.delete();
+        assert directory.mkdirs();
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "neostore.nodestore.db"), "rw")) {
+            file.setLength(nodeStoreSize);
+        }
+        return directory;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        small = createStore("small", 0);
+        large = createStore("large", 100 * MB);
+    }
+
+    @After
+    public void tearDown() {
+        Toolbox.delete(small);
+        Toolbox.delete(large);
+    }
+
+    @Test
+    public void testNoBudgetLeavesDefaults() {
+        MemoryBudget budget = new MemoryBudget(0);
+        assert budget.allocate(47471, large, 0.0).isEmpty();
+        assert budget.getAllocated() == 0;
+    }
+
+    @Test
+    public void testAllocationIsLimitedByStoreSize() {
+        MemoryBudget budget = new MemoryBudget(1024 * MB);
+        budget.allocate(47471, small, 0.0);
+        assert budget.getAllocation(47471) == 5 * MB;
+    }
+
+    @Test
+    public void testAllocationIsSplitByStoreSize() {
+        MemoryBudget budget = new MemoryBudget(1024 * MB);
+        Map<Setting<?>, String> config = budget.allocate(47471, large, 0.0);
+        long nodes = Long.parseLong(config.get(GraphDatabaseSettings.nodestore_mapped_memory_size));
+        long rels = Long.parseLong(config.get(GraphDatabaseSettings.relationshipstore_mapped_memory_size));
+        assert nodes > 100 * MB;
+        assert rels == MB;
+    }
+
+    @Test
+    public void testAllocationsNeverExceedBudget() {
+        MemoryBudget budget = new MemoryBudget(64 * MB);
+        for (int port = 47471; port <= 47480; port++) {
+            Map<Setting<?>, String> config = budget.allocate(port, large, 0.0);
+            assert budget.getAllocated() <= 64 * MB;
+            long mapped = 0;
+            for (Map.Entry<Setting<?>, String> entry : config.entrySet()) {
+                if (entry.getKey() != GraphDatabaseSettings.cache_type) {
+                    mapped += Long.parseLong(entry.getValue());
+                }
+            }
+            assert mapped <= budget.getAllocation(port);
+        }
+        assert budget.getAllocation(47471) == 64 * MB;
+        assert budget.getAllocation(47472) == 0;
+    }
+
+    @Test
+    public void testRegisteredGraphsAreLeftTheirShare() {
+        MemoryBudget budget = new MemoryBudget(64 * MB);
+        budget.register(47471, large);
+        budget.register(47472, large);
+        budget.allocate(47471, large, 0.0);
+        budget.allocate(47472, large, 0.0);
+        assert budget.getAllocation(47471) == 32 * MB;
+        assert budget.getAllocation(47472) == 32 * MB;
+    }
+
+    @Test
+    public void testReleasedMemoryCanBeReallocated() {
+        MemoryBudget budget = new MemoryBudget(64 * MB);
+        budget.allocate(47471, large, 0.0);
+        budget.allocate(47472, large, 0.0);
+        assert budget.getAllocation(47472) == 0;
+        budget.unregister(47471);
+        budget.allocate(47472, large, 0.0);
+        assert budget.getAllocation(47472) == 64 * MB;
+    }
+
+    @Test
+    public void testClosedGraphsKeepTheirShare() {
+        MemoryBudget budget = new MemoryBudget(64 * MB);
+        budget.register(47471, large);
+        budget.register(47472, large);
+        budget.allocate(47471, large, 0.0);
+        budget.release(47471);
+        budget.allocate(47472, large, 0.0);
+        assert budget.getAllocation(47472) == 32 * MB;
+        budget.allocate(47471, large, 0.0);
+        assert budget.getAllocation(47471) == 32 * MB;
+    }
+
+    @Test
+    public void testBusyGraphsGetLargerShare() {
+        MemoryBudget budget = new MemoryBudget(128 * MB);
+        budget.allocate(47471, large, 0.0);
+        budget.release(47471);
+        Map<Setting<?>, String> config = budget.allocate(47472, large, 100.0);
+        assert "soft".equals(config.get(GraphDatabaseSettings.cache_type));
+        budget.allocate(47471, large, 0.0);
+        assert budget.getAllocation(47472) > budget.getAllocation(47471);
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.zerograph.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zerograph.Metrics;
+import org.zerograph.Request;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+import org.zerograph.resources.MetricsResource;
+import org.zerograph.test.helpers.QuickMap;
+
+import java.util.Map;
+
+public class MetricsResourceTest extends ResourceTest {
+
+    protected Metrics metrics;
+    protected MetricsResource resource;
+
+    @Before
+    public void createResource() {
+        metrics = new Metrics();
+        resource = new MetricsResource(responseCollector, metrics);
+    }
+
+    @Test
+    public void testCanGetRequestTimings() throws ClientError, ServerError {
+        metrics.recordBatch(2, 5000);
+        metrics.getRequestMetrics("Node", "GET").record(20000, 3000);
+        metrics.getRequestMetrics("Node", "GET").record(40000, 1000);
+        Request request = new Request("GET", "Metrics", QuickMap.from());
+        resource.get(request, context);
+        Map metricsMap = (Map)responseCollector.getBody().get(0);
+        Map batches = (Map)metricsMap.get("batches");
+        assert ((Map)batches.get("size")).get("count").equals(1L);
+        assert ((Map)batches.get("parse")).get("max").equals(5L);
+        Map timings = (Map)((Map)metricsMap.get("requests")).get("GET Node");
+        Map execution = (Map)timings.get("execution");
+        assert execution.get("count").equals(2L);
+        assert execution.get("min").equals(20L);
+        assert execution.get("max").equals(40L);
+        assert ((Map)timings.get("serialization")).get("max").equals(3L);
+    }
+
+    @Test
+    public void testCanGetDatabaseOpenTime() throws ClientError, ServerError {
+        metrics.recordOpen(250000000L);
+        assert metrics.getLastOpenTime() == 250000;
+        Request request = new Request("GET", "Metrics", QuickMap.from());
+        resource.get(request, context);
+        Map metricsMap = (Map)responseCollector.getBody().get(0);
+        Map open = (Map)((Map)metricsMap.get("database")).get("open");
+        assert open.get("count").equals(1L);
+    }
+
+    @Test
+    public void testWorkerUtilisationIsBetweenZeroAndOne() {
+        assert metrics.getWorkerUtilisation() == 0.0;
+        metrics.workerStarted();
+        metrics.batchStarted();
+        double utilisation = metrics.getWorkerUtilisation();
+        assert utilisation >= 0.0 && utilisation <= 1.0;
+        metrics.batchEnded();
+        metrics.workerStopped();
+        assert metrics.getWorkerCount() == 0;
+        assert metrics.getBusyWorkers() == 0;
+    }
+
+}
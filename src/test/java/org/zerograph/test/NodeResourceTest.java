@@ -49,6 +49,18 @@ public class NodeResourceTest extends ResourceTest {
         assert responseCollector.getBody().get(0).equals(put);
     }
 
+    @Test
+    public void testCanSetNodeOverExistingLabelsAndProperties() throws ClientError, ServerError {
+        Node created = createNode(ALICE_THE_EMPLOYEE);
+        created.setProperty("tags", new String[] {"a", "b"});
+        Request request = new Request("PUT", "node",
+                QuickMap.from("id", created.getId(),
+                              "labels", new ArrayList<>(ALICE.getLabels()),
+                              "properties", ALICE.getProperties()));
+        Node put = (Node)resource.set(request, context);
+        assert ALICE.equals(put);
+    }
+
     @Test(expected=ClientError.class)
     public void testCannotSetNonExistentNode() throws ClientError, ServerError {
         Request request = new Request("PUT", "node",
@@ -0,0 +1,191 @@
+package org.zerograph.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.zerograph.Cursor;
+import org.zerograph.CursorSet;
+import org.zerograph.Request;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+import org.zerograph.resources.NodeSetResource;
+import org.zerograph.test.helpers.QuickMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+public class NodeSetResourceTest extends ResourceTest {
+
+    protected CursorSet cursors;
+    protected NodeSetResource resource;
+
+    @Before
+    public void createResource() {
+        cursors = new CursorSet();
+        resource = new NodeSetResource(responseCollector, cursors);
+    }
+
+    @Test
+    public void testCanCreateNodesFromColumns() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "NodeSet",
+                QuickMap.from("labels", new ArrayList<>(ALICE.getLabels()),
+                              "properties", QuickMap.from("name", Arrays.asList("Alice", "Bob"))));
+        Node first = (Node)resource.create(request, context);
+        assert ALICE.equals(first);
+        assert responseCollector.getBody().size() == 1;
+        long[] ids = (long[])responseCollector.getBody().get(0);
+        assert ids.length == 2;
+        assert ids[0] == first.getId();
+        assert BOB.equals(database.getNodeById(ids[1]));
+        assert responseCollector.getFoot().get("nodes_created").equals(2);
+    }
+
+    @Test
+    public void testCanCreateNodesByCount() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "NodeSet",
+                QuickMap.from("labels", new ArrayList<>(ALICE.getLabels()), "count", 3));
+        resource.create(request, context);
+        long[] ids = (long[])responseCollector.getBody().get(0);
+        assert ids.length == 3;
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotCreateNodesFromUnevenColumns() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "NodeSet",
+                QuickMap.from("properties", QuickMap.from("name", Arrays.asList("Alice", "Bob"),
+                                                          "age", Arrays.asList(33))));
+        resource.create(request, context);
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotCreateNegativeCountOfNodes() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "NodeSet", QuickMap.from("count", -1));
+        resource.create(request, context);
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotCreateMoreNodesThanLimit() throws ClientError, ServerError {
+        resource = new NodeSetResource(responseCollector, cursors, 10);
+        Request request = new Request("CREATE", "NodeSet",
+                QuickMap.from("labels", new ArrayList<>(ALICE.getLabels()), "count", Integer.MAX_VALUE));
+        resource.create(request, context);
+    }
+
+    @Test
+    public void testCanPageThroughNodesWithCursor() throws ClientError, ServerError {
+        createNode(ALICE);
+        createNode(BOB);
+        commit();
+        Request request = new Request("GET", "NodeSet", QuickMap.from("label", "Person", "limit", 1));
+        Node first = (Node)resource.get(request, context);
+        assert responseCollector.getBody().size() == 1;
+        Object cursor = responseCollector.getFoot().get("cursor");
+        assert cursor != null;
+        request = new Request("GET", "NodeSet", QuickMap.from("cursor", cursor, "limit", 1));
+        Node second = (Node)resource.get(request, context);
+        assert !second.equals(first);
+        assert responseCollector.getBody().size() == 2;
+        assert responseCollector.getFoot().get("cursor") == null;
+    }
+
+    @Test
+    public void testPagesAreNotShiftedByLaterDeletes() throws ClientError, ServerError {
+        createNode(ALICE);
+        createNode(BOB);
+        commit();
+        Request request = new Request("GET", "NodeSet", QuickMap.from("label", "Person", "limit", 1));
+        Node first = (Node)resource.get(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        first.delete();
+        commit();
+        request = new Request("GET", "NodeSet", QuickMap.from("cursor", cursor, "limit", 1));
+        Node second = (Node)resource.get(request, context);
+        assert second != null && !second.equals(first);
+    }
+
+    @Test
+    public void testCursorCannotBeReadByTwoRequestsAtOnce() throws Exception {
+        createNode(ALICE);
+        createNode(BOB);
+        commit();
+        Request request = new Request("GET", "NodeSet", QuickMap.from("label", "Person", "limit", 1));
+        resource.get(request, context);
+        final long cursorID = (Long)responseCollector.getFoot().get("cursor");
+        final CountDownLatch resumed = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Cursor cursor = cursors.get(cursorID);
+                assert cursor.tryResume();
+                resumed.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    // suspend anyway
+                }
+                cursor.suspend();
+            }
+        });
+        reader.start();
+        resumed.await();
+        try {
+            resource.get(new Request("GET", "NodeSet", QuickMap.from("cursor", cursorID, "limit", 1)), context);
+            assert false;
+        } catch (ClientError ex) {
+            assert ex.getMessage().contains("in use");
+        } finally {
+            done.countDown();
+            reader.join();
+        }
+        resource.get(new Request("GET", "NodeSet", QuickMap.from("cursor", cursorID, "limit", 1)), context);
+        assert responseCollector.getBody().size() == 2;
+    }
+
+    @Test
+    public void testCursorWithoutLimitFetchesRemainingNodes() throws ClientError, ServerError {
+        createNode(ALICE);
+        createNode(BOB);
+        createNode(BOB);
+        commit();
+        Request request = new Request("GET", "NodeSet", QuickMap.from("label", "Person", "limit", 1));
+        resource.get(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        request = new Request("GET", "NodeSet", QuickMap.from("cursor", cursor));
+        resource.get(request, context);
+        assert responseCollector.getBody().size() == 3;
+        assert responseCollector.getFoot().get("cursor") == null;
+        assert cursors.size() == 0;
+    }
+
+    @Test
+    public void testCanMergeNode() throws ClientError, ServerError {
+        Request request = new Request("PATCH", "NodeSet", QuickMap.from("label", "Person", "key", "name", "value", "Alice"));
+        Node created = (Node)resource.patch(request, context);
+        Node matched = (Node)resource.patch(request, context);
+        assert created.equals(matched);
+        assert ALICE.equals(created);
+    }
+
+    @Test
+    public void testCanMergeManyNodes() throws ClientError, ServerError {
+        Node alice = createNode(ALICE);
+        Request request = new Request("PATCH", "NodeSet",
+                QuickMap.from("label", "Person", "key", "name", "values", Arrays.asList("Alice", "Bob", "Bob")));
+        resource.patch(request, context);
+        long[] ids = (long[])responseCollector.getBody().get(0);
+        assert ids.length == 3;
+        assert ids[0] == alice.getId();
+        assert BOB.equals(database.getNodeById(ids[1]));
+        assert ids[2] == ids[1];
+        assert responseCollector.getFoot().get("nodes_created").equals(1);
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotMergeNullValue() throws ClientError, ServerError {
+        Request request = new Request("PATCH", "NodeSet", QuickMap.from("label", "Person", "key", "name", "value", null));
+        resource.patch(request, context);
+    }
+
+}
@@ -0,0 +1,134 @@
+package org.zerograph.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.zerograph.Request;
+import org.zerograph.except.ClientError;
+import org.zerograph.except.ServerError;
+import org.zerograph.resources.RelSetResource;
+import org.zerograph.test.helpers.QuickMap;
+
+import java.util.Arrays;
+
+public class RelSetResourceTest extends ResourceTest {
+
+    protected RelSetResource resource;
+
+    protected Node alice;
+    protected Node bob;
+
+    @Before
+    public void createResource() {
+        resource = new RelSetResource(responseCollector);
+        alice = createNode(ALICE);
+        bob = createNode(BOB);
+    }
+
+    @Test
+    public void testCanCreateRelsFromIdLists() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "RelSet",
+                QuickMap.from("start", Arrays.asList(alice.getId(), bob.getId()),
+                              "end", Arrays.asList(bob.getId(), alice.getId()),
+                              "type", KNOWS_SINCE_1999.getType(),
+                              "properties", QuickMap.from("since", Arrays.asList(1999, 1999))));
+        resource.create(request, context);
+        assert responseCollector.getBody().size() == 1;
+        assert responseCollector.getBody().get(0).equals(2);
+        assert responseCollector.getFoot().get("relationships_created").equals(2);
+        int count = 0;
+        for (Relationship rel : alice.getRelationships(Direction.OUTGOING)) {
+            assert rel.getEndNode().equals(bob);
+            assert KNOWS_SINCE_1999.equals(rel);
+            count += 1;
+        }
+        assert count == 1;
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotCreateRelsFromUnevenIdLists() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "RelSet",
+                QuickMap.from("start", Arrays.asList(alice.getId(), bob.getId()),
+                              "end", Arrays.asList(bob.getId()),
+                              "type", KNOWS_SINCE_1999.getType()));
+        resource.create(request, context);
+    }
+
+    @Test(expected=ClientError.class)
+    public void testCannotCreateRelsToNonExistentNode() throws ClientError, ServerError {
+        Request request = new Request("CREATE", "RelSet",
+                QuickMap.from("start", Arrays.asList(alice.getId()),
+                              "end", Arrays.asList(999),
+                              "type", KNOWS_SINCE_1999.getType()));
+        resource.create(request, context);
+    }
+
+    @Test
+    public void testCanPageThroughRelsWithCursor() throws ClientError, ServerError {
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("KNOWS"));
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("LIKES"));
+        commit();
+        Request request = new Request("GET", "RelSet", QuickMap.from("start", alice.getId(), "skip", 1, "limit", 5));
+        resource.get(request, context);
+        assert responseCollector.getBody().size() == 1;
+        assert responseCollector.getFoot().get("cursor") == null;
+    }
+
+    @Test
+    public void testPagesAreNotShiftedByLaterDeletes() throws ClientError, ServerError {
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("KNOWS"));
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("LIKES"));
+        commit();
+        Request request = new Request("GET", "RelSet", QuickMap.from("start", alice.getId(), "limit", 1));
+        Relationship first = (Relationship)resource.get(request, context);
+        Object cursor = responseCollector.getFoot().get("cursor");
+        assert cursor != null;
+        first.delete();
+        commit();
+        request = new Request("GET", "RelSet", QuickMap.from("cursor", cursor, "limit", 1));
+        Relationship second = (Relationship)resource.get(request, context);
+        assert second != null && !second.equals(first);
+    }
+
+    @Test
+    public void testCanGetRelsBetweenNodes() throws ClientError, ServerError {
+        Node carol = createNode();
+        for (int i = 0; i < 10; i++) {
+            alice.createRelationshipTo(carol, DynamicRelationshipType.withName("KNOWS"));
+        }
+        Relationship rel = alice.createRelationshipTo(bob, DynamicRelationshipType.withName("KNOWS"));
+        bob.createRelationshipTo(alice, DynamicRelationshipType.withName("KNOWS"));
+        Request request = new Request("GET", "RelSet", QuickMap.from("start", alice.getId(), "end", bob.getId(), "type", "KNOWS"));
+        Relationship first = (Relationship)resource.get(request, context);
+        assert first.equals(rel);
+        assert responseCollector.getBody().size() == 1;
+    }
+
+    @Test
+    public void testPatchCreatesRelOnlyOnce() throws ClientError, ServerError {
+        Request request = new Request("PATCH", "RelSet", QuickMap.from("start", alice.getId(), "end", bob.getId(), "type", "KNOWS"));
+        Relationship created = (Relationship)resource.patch(request, context);
+        Relationship matched = (Relationship)resource.patch(request, context);
+        assert created.equals(matched);
+        assert created.getStartNode().equals(alice);
+        assert created.getEndNode().equals(bob);
+    }
+
+    @Test
+    public void testCanDeleteRelsBetweenNodes() throws ClientError, ServerError {
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("KNOWS"));
+        alice.createRelationshipTo(bob, DynamicRelationshipType.withName("LIKES"));
+        Request request = new Request("DELETE", "RelSet", QuickMap.from("start", alice.getId(), "end", bob.getId(), "type", "KNOWS"));
+        resource.delete(request, context);
+        int count = 0;
+        for (Relationship rel : alice.getRelationships(Direction.OUTGOING)) {
+            assert rel.getType().name().equals("LIKES");
+            count += 1;
+        }
+        assert count == 1;
+    }
+
+}
@@ -51,6 +51,18 @@ public abstract class ResourceTest {
         database.shutdown();
     }
 
+    /**
+     * Commit the data created so far, so that it can be read by cursors,
+     * which have transactions of their own.
+     *
+     */
+    protected void commit() {
+        tx.success();
+        tx.close();
+        tx = database.beginTx();
+        context.setTransaction(tx);
+    }
+
     protected Node createNode() {
         return database.createNode();
     }
@@ -0,0 +1,170 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Test;
+import org.zerograph.Environment;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.zerograph.Graph;
+import org.zerograph.GraphDirectory;
+import org.zerograph.GraphWorker;
+import org.zerograph.test.helpers.ZappClient;
+import org.zeromq.ZMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ServiceTest {
+
+    final private static int PORT = 47573;
+
+    private Graph graph;
+
+    private Graph open(int minWorkers, int maxWorkers) throws Exception {
+        Environment environment = Environment.getInstance();
+        environment.setSetting(PORT + ".workers.min", Integer.toString(minWorkers));
+        environment.setSetting(PORT + ".workers.max", Integer.toString(maxWorkers));
+        environment.setSetting(PORT + ".workers.idle_timeout", "200");
+        graph = Graph.open("localhost", PORT);
+        return graph;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (graph != null) {
+            Graph.drop("localhost", PORT);
+        }
+    }
+
+    @Test
+    public void testMaxWorkersBelowMinIsRaisedToMin() throws Exception {
+        open(4, 2);
+        assert graph.getMinWorkers() == 4;
+        assert graph.getMaxWorkers() == 4;
+    }
+
+    @Test
+    public void testInvalidMinWorkersIsReplacedByDefault() throws Exception {
+        open(0, 2);
+        assert graph.getMinWorkers() == 1;
+        assert graph.getMaxWorkers() == 2;
+    }
+
+    @Test(timeout=60000)
+    public void testWorkersGrowUnderLoadAndShrinkBackToMin() throws Exception {
+        open(1, 4);
+        final StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            batch.append("CREATE Node {\"labels\":[\"Person\"],\"properties\":{\"number\":").append(i).append("}}\n");
+        }
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicInteger peak = new AtomicInteger();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (ZappClient client = new ZappClient(PORT)) {
+                        for (int i = 0; i < 10; i++) {
+                            if (!ZappClient.errors(client.call(batch.toString())).isEmpty()) {
+                                failure.compareAndSet(null, "Batch failed");
+                            }
+                            peak.set(Math.max(peak.get(), graph.getWorkerCount()));
+                        }
+                    } catch (AssertionError ex) {
+                        failure.compareAndSet(null, ex.getMessage());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert failure.get() == null : failure.get();
+        assert peak.get() > 1 && peak.get() <= 4 : peak.get();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (graph.getWorkerCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assert graph.getWorkerCount() == 1;
+    }
+
+    @Test(timeout=60000)
+    public void testPrefetchedBatchesAreAnsweredToTheirOwnClients() throws Exception {
+        Environment.getInstance().setSetting(PORT + ".workers.prefetch", "2");
+        open(1, 1);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String label = "Client" + t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (ZappClient client = new ZappClient(PORT)) {
+                        client.call("CREATE Node {\"labels\":[\"" + label + "\"],\"properties\":{}}\n");
+                        for (int i = 0; i < 25; i++) {
+                            List<String> lines = client.call("GET NodeSet {\"label\":\"" + label + "\"}\n");
+                            if (!ZappClient.errors(lines).isEmpty() || !lines.toString().contains("\"" + label + "\"")) {
+                                failure.compareAndSet(null, label + " received " + lines);
+                            }
+                        }
+                    } catch (AssertionError ex) {
+                        failure.compareAndSet(null, ex.getMessage());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert failure.get() == null : failure.get();
+        assert graph.getWorkerCount() == 1;
+    }
+
+    @Test
+    public void testOnlyReadOnlyBatchesArePrefetched() throws Exception {
+        assert GraphWorker.isReadOnly(batch("GET NodeSet {\"label\":\"Person\"}\r\nGET Node {\"id\":1}\r\n"));
+        assert GraphWorker.isReadOnly(batch("ACCEPT application/x-yaml\r\n", "GET Node {\"id\":1}\r\n"));
+        assert !GraphWorker.isReadOnly(batch("GET Node {\"id\":1}\r\n", "CREATE Node {}\r\n"));
+        assert !GraphWorker.isReadOnly(batch("EXECUTE Cypher {\"query\":\"MATCH (a) RETURN a\"}\r\n"));
+        assert !GraphWorker.isReadOnly(batch("GET Node {\"id\":1}\r\nACCEPT application/x-yaml\r\n"));
+    }
+
+    private static ZMsg batch(String... frames) {
+        ZMsg message = new ZMsg();
+        message.add("client");
+        message.add("");
+        for (String frame : frames) {
+            message.add(frame);
+        }
+        return message;
+    }
+
+    @Test(timeout=60000)
+    public void testBatchesAreAnsweredWhenNoWorkerCanStart() throws Exception {
+        open(1, 2);
+        // hold the store open elsewhere so that the graph cannot open it
+        GraphDatabaseService blocker = new GraphDatabaseFactory().newEmbeddedDatabase(
+                new GraphDirectory("localhost", PORT).getPath());
+        try (ZappClient client = new ZappClient(PORT)) {
+            List<String> lines = client.call("GET NodeSet {\"label\":\"Person\"}\n");
+            assert ZappClient.errors(lines).size() == 1 : lines;
+            assert graph.getWorkerCount() == 0;
+            blocker.shutdown();
+            blocker = null;
+            lines = client.call("GET NodeSet {\"label\":\"Person\"}\n");
+            assert ZappClient.errors(lines).isEmpty() : lines;
+        } finally {
+            if (blocker != null) {
+                blocker.shutdown();
+            }
+        }
+    }
+
+}
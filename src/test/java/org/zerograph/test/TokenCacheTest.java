@@ -0,0 +1,54 @@
+package org.zerograph.test;
+
+import org.junit.Test;
+import org.zerograph.TokenCache;
+
+import java.util.ArrayList;
+
+public class TokenCacheTest {
+
+    @Test
+    public void testRepeatedTokenIsCountedAsHit() {
+        TokenCache tokens = new TokenCache();
+        assert tokens.getLabel("Person") == tokens.getLabel("Person");
+        tokens.getRelationshipType("KNOWS");
+        assert tokens.getHits() == 1;
+        assert tokens.getMisses() == 2;
+    }
+
+    @Test
+    public void testTokensAreNotRetainedOnceFull() {
+        TokenCache tokens = new TokenCache(1);
+        tokens.getLabel("Person");
+        tokens.getLabel("Place");
+        tokens.getLabel("Place");
+        tokens.getLabel("Person");
+        assert tokens.getHits() == 1;
+        assert tokens.getMisses() == 3;
+    }
+
+    @Test
+    public void testHitsAreCountedAcrossThreads() throws InterruptedException {
+        final TokenCache tokens = new TokenCache();
+        tokens.getLabel("Person");
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        tokens.getLabel("Person");
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assert tokens.getHits() == 8000;
+        assert tokens.getMisses() == 1;
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.zerograph.test;
+
+import org.junit.After;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.zerograph.Environment;
+import org.zerograph.Graph;
+import org.zerograph.GraphDirectory;
+import org.zerograph.Zerograph;
+import org.zerograph.test.helpers.ZappClient;
+
+import java.util.concurrent.TimeUnit;
+
+public class ZerographTest {
+
+    private static void createGraph(int port) {
+        assert new GraphDirectory("localhost", port).getFile().mkdirs();
+    }
+
+    private static Zerograph start(int threads) throws Exception {
+        Environment.getInstance().setSetting("startup.threads", Integer.toString(threads));
+        Zerograph zerograph = new Zerograph();
+        zerograph.start();
+        return zerograph;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Graph graph : Graph.getAllRunning()) {
+            Graph.drop(graph.getHost(), graph.getPort());
+        }
+    }
+
+    @Test
+    public void testDatabasesAreOpenedAtStartup() throws Exception {
+        createGraph(47581);
+        Zerograph zerograph = start(2);
+        assert zerograph.awaitStartup(30, TimeUnit.SECONDS);
+        assert Graph.get("localhost", Zerograph.ZEROGRAPH_PORT).getEngine() != null;
+        assert Graph.get("localhost", 47581).getEngine() != null;
+    }
+
+    @Test
+    public void testDatabasesAreOpenedOnFirstRequestWithoutStartupThreads() throws Exception {
+        createGraph(47581);
+        Zerograph zerograph = start(0);
+        assert zerograph.awaitStartup(30, TimeUnit.SECONDS);
+        Graph graph = Graph.get("localhost", 47581);
+        assert graph.getEngine() == null;
+        try (ZappClient client = new ZappClient(47581)) {
+            assert ZappClient.errors(client.call("GET NodeSet {\"label\":\"Person\"}")).isEmpty();
+        }
+        assert graph.getEngine() != null;
+        assert Graph.get("localhost", Zerograph.ZEROGRAPH_PORT).getEngine() == null;
+    }
+
+    @Test
+    public void testGraphsDroppedDuringStartupAreNotOpened() throws Exception {
+        for (int port = 47581; port <= 47584; port++) {
+            createGraph(port);
+        }
+        Zerograph zerograph = start(1);
+        for (int port = 47581; port <= 47584; port++) {
+            Graph.drop("localhost", port);
+        }
+        assert zerograph.awaitStartup(30, TimeUnit.SECONDS);
+        for (int port = 47581; port <= 47584; port++) {
+            assert !new GraphDirectory("localhost", port).exists();
+        }
+    }
+
+    @Test
+    public void testDatabasesAreClosedOnStop() throws Exception {
+        createGraph(47581);
+        Zerograph zerograph = start(2);
+        zerograph.stop();
+        Graph graph = Graph.get("localhost", 47581);
+        assert graph.getEngine() == null;
+        // the store can only be opened again once it has been shut down
+        GraphDatabaseService database = new GraphDatabaseFactory().newEmbeddedDatabase(
+                new GraphDirectory("localhost", 47581).getPath());
+        database.shutdown();
+    }
+
+    @Test
+    public void testGraphsOpenedAtStartupHibernateWhenIdle() throws Exception {
+        Environment.getInstance().setSetting("47585.hibernation.idle_timeout", "200");
+        createGraph(47585);
+        Zerograph zerograph = start(2);
+        assert zerograph.awaitStartup(30, TimeUnit.SECONDS);
+        Graph graph = Graph.get("localhost", 47585);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (graph.getEngine() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assert graph.getEngine() == null;
+        assert Graph.get("localhost", Zerograph.ZEROGRAPH_PORT).getEngine() != null;
+    }
+
+}
@@ -64,6 +64,15 @@ public class ResponseCollector implements ResponderInterface {
         body.add(data);
     }
 
+    @Override
+    public void sendBodyRow(Map<String, Object> row, List<String> columns) throws MalformedResponse {
+        ArrayList<Object> values = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            values.add(row.get(column));
+        }
+        body.add(values);
+    }
+
     @Override
     public void endBodyList() throws MalformedResponse {
 
@@ -94,6 +103,11 @@ public class ResponseCollector implements ResponderInterface {
 
     }
 
+    @Override
+    public long getSerializationTime() {
+        return 0;
+    }
+
     @Override
     public Node sendNodes(Iterable<Node> result) throws MalformedResponse {
         Node first = null;
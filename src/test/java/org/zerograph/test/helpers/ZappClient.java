@@ -0,0 +1,77 @@
+package org.zerograph.test.helpers;
+
+import org.zeromq.ZMQ;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal ZAPP client for tests that talk to a running service.
+ *
+ */
+public class ZappClient implements AutoCloseable {
+
+    final private static int TIMEOUT = 30000;  // milliseconds
+
+    final private ZMQ.Context context;
+    final private ZMQ.Socket socket;
+
+    public ZappClient(int port) {
+        this.context = ZMQ.context(1);
+        this.socket = context.socket(ZMQ.REQ);
+        this.socket.setReceiveTimeOut(TIMEOUT);
+        this.socket.connect("tcp://localhost:" + port);
+    }
+
+    /**
+     * Send a request batch and return the frames of the response, not
+     * including the empty frame that ends it.
+     *
+     */
+    public List<byte[]> callFrames(String batch) {
+        socket.send(batch);
+        ArrayList<byte[]> frames = new ArrayList<>();
+        do {
+            byte[] frame = socket.recv();
+            if (frame == null) {
+                throw new AssertionError("No response within " + TIMEOUT + " ms");
+            }
+            if (frame.length > 0) {
+                frames.add(frame);
+            }
+        } while (socket.hasReceiveMore());
+        return frames;
+    }
+
+    /**
+     * Send a request batch and return the lines of the response.
+     *
+     */
+    public List<String> call(String batch) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (byte[] frame : callFrames(batch)) {
+            for (String line : new String(frame, StandardCharsets.UTF_8).split("\n")) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    public static List<String> errors(List<String> lines) {
+        ArrayList<String> errors = new ArrayList<>();
+        for (String line : lines) {
+            if (line.startsWith("error:")) {
+                errors.add(line);
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        context.term();
+    }
+
+}
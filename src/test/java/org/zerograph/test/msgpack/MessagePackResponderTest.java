@@ -0,0 +1,61 @@
+package org.zerograph.test.msgpack;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zerograph.MessagePackResponder;
+import org.zerograph.except.MalformedResponse;
+import org.zeromq.ZMQ;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class MessagePackResponderTest {
+
+    private ZMQ.Context context;
+    private ZMQ.Socket client;
+    private MessagePackResponder responder;
+
+    @Before
+    public void setUp() {
+        context = ZMQ.context(1);
+        client = context.socket(ZMQ.PAIR);
+        client.bind("inproc://responder");
+        ZMQ.Socket server = context.socket(ZMQ.PAIR);
+        server.connect("inproc://responder");
+        responder = new MessagePackResponder(server, 1024);
+        responder.beginResponseBatch();
+    }
+
+    @After
+    public void tearDown() {
+        responder.close();
+        client.close();
+        context.term();
+    }
+
+    private byte[] receive() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        do {
+            byte[] frame = client.recv();
+            out.write(frame, 0, frame.length);
+        } while (client.hasReceiveMore());
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testUnpackableBodyLeavesNothingBehind() throws MalformedResponse {
+        responder.beginResponse();
+        try {
+            responder.sendBody(Arrays.asList(1, new Object()));
+            assert false;
+        } catch (IllegalArgumentException ex) {
+            responder.sendError(new IllegalArgumentException("oops"));
+        }
+        responder.endResponse();
+        responder.endResponseBatch();
+        byte[] expected = {(byte) 0x92, (byte) 0xFF, (byte) 0xA4, 'o', 'o', 'p', 's', (byte) 0x92, 7, (byte) 0xC0};
+        assert Arrays.equals(receive(), expected);
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.zerograph.test.msgpack;
+
+import org.junit.Test;
+import org.zerograph.test.helpers.FakeNode;
+import org.zerograph.util.MessagePack;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+public class MessagePackTest {
+
+    private static byte[] pack(Object value) {
+        MessagePack packer = new MessagePack(16);
+        packer.pack(value);
+        return packer.toByteArray();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testCanPackNull() {
+        assert Arrays.equals(pack(null), bytes(0xC0));
+    }
+
+    @Test
+    public void testCanPackBooleans() {
+        assert Arrays.equals(pack(true), bytes(0xC3));
+        assert Arrays.equals(pack(false), bytes(0xC2));
+    }
+
+    @Test
+    public void testCanPackSmallIntegers() {
+        assert Arrays.equals(pack(42), bytes(42));
+        assert Arrays.equals(pack(-1), bytes(0xFF));
+    }
+
+    @Test
+    public void testCanPackLargeIntegers() {
+        assert Arrays.equals(pack(1000), bytes(0xD2, 0x00, 0x00, 0x03, 0xE8));
+        assert Arrays.equals(pack(1L << 32), bytes(0xD3, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00));
+    }
+
+    @Test
+    public void testCanPackString() {
+        assert Arrays.equals(pack("hi"), bytes(0xA2, 'h', 'i'));
+    }
+
+    @Test
+    public void testCanPackNonAsciiString() {
+        assert Arrays.equals(pack("\u00e9"), bytes(0xA2, 0xC3, 0xA9));
+    }
+
+    @Test
+    public void testCanPackLongerStrings() {
+        byte[] str8 = pack(new String(new char[32]).replace('\0', 'x'));
+        assert str8.length == 34 && str8[0] == (byte) 0xD9 && str8[1] == 32;
+        byte[] str16 = pack(new String(new char[300]).replace('\0', 'x'));
+        assert str16.length == 303 && str16[0] == (byte) 0xDA && str16[1] == 0x01 && str16[2] == 0x2C;
+        byte[] str32 = pack(new String(new char[70000]).replace('\0', 'x'));
+        assert str32.length == 70005 && str32[0] == (byte) 0xDB;
+    }
+
+    @Test
+    public void testCanTruncatePartlyPackedValue() {
+        MessagePack packer = new MessagePack(16);
+        packer.pack(1);
+        int size = packer.size();
+        try {
+            packer.pack(Arrays.asList(2, new Object()));
+            assert false;
+        } catch (IllegalArgumentException ex) {
+            packer.truncate(size);
+        }
+        assert Arrays.equals(packer.toByteArray(), bytes(1));
+    }
+
+    @Test
+    public void testCanPackPrimitiveArray() {
+        assert Arrays.equals(pack(new int[] {2, 3, 5}), bytes(0x93, 2, 3, 5));
+    }
+
+    @Test
+    public void testCanPackMap() {
+        LinkedHashMap<String, Object> value = new LinkedHashMap<>();
+        value.put("a", 1);
+        assert Arrays.equals(pack(value), bytes(0x81, 0xA1, 'a', 1));
+    }
+
+    @Test
+    public void testCanPackNode() {
+        LinkedHashMap<String, Object> properties = new LinkedHashMap<>();
+        properties.put("n", 1);
+        FakeNode value = new FakeNode(42, Arrays.asList("A"), properties);
+        byte[] expected = bytes(
+                0xC9, 0x00, 0x00, 0x00, 0x11, MessagePack.NODE,
+                0x93,
+                42,
+                0xDD, 0x00, 0x00, 0x00, 0x01, 0xA1, 'A',
+                0xDF, 0x00, 0x00, 0x00, 0x01, 0xA1, 'n', 1);
+        assert Arrays.equals(pack(value), expected);
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.zerograph.test.yaml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zerograph.Responder;
+import org.zerograph.except.MalformedResponse;
+import org.zeromq.ZMQ;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResponderTest {
+
+    private ZMQ.Context context;
+    private ZMQ.Socket client;
+    private ZMQ.Socket server;
+
+    @Before
+    public void setUp() {
+        context = ZMQ.context(1);
+        client = context.socket(ZMQ.PAIR);
+        client.bind("inproc://responder");
+        server = context.socket(ZMQ.PAIR);
+        server.connect("inproc://responder");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        client.close();
+        context.term();
+    }
+
+    private List<String> receive() {
+        ArrayList<String> frames = new ArrayList<>();
+        do {
+            byte[] frame = client.recv();
+            if (frame.length > 0) {
+                frames.add(new String(frame, StandardCharsets.UTF_8));
+            }
+        } while (client.hasReceiveMore());
+        return frames;
+    }
+
+    private List<String> respond(int frameSize, int itemCount) throws MalformedResponse {
+        Responder responder = new Responder(server, frameSize);
+        responder.beginResponseBatch();
+        responder.beginResponse();
+        responder.startBodyList();
+        for (int i = 0; i < itemCount; i++) {
+            responder.sendBodyItem("item number " + i);
+        }
+        responder.endBodyList();
+        responder.endResponse();
+        responder.endResponseBatch();
+        return receive();
+    }
+
+    private static String join(List<String> frames) {
+        StringBuilder text = new StringBuilder();
+        for (String frame : frames) {
+            text.append(frame);
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testSmallResponseIsSentAsOneFrame() throws MalformedResponse {
+        assert respond(Responder.DEFAULT_FRAME_SIZE, 10).size() == 1;
+    }
+
+    @Test
+    public void testLargeResponseIsSplitOnLineBoundaries() throws MalformedResponse {
+        String whole = join(respond(Responder.DEFAULT_FRAME_SIZE, 1000));
+        List<String> frames = respond(256, 1000);
+        assert frames.size() > 1;
+        for (String frame : frames) {
+            assert frame.endsWith("\n");
+            assert frame.length() < 256 + 64;
+        }
+        assert join(frames).equals(whole);
+    }
+
+    @Test
+    public void testZeroFrameSizeSendsEachLineSeparately() throws MalformedResponse {
+        String whole = join(respond(Responder.DEFAULT_FRAME_SIZE, 10));
+        List<String> frames = respond(0, 10);
+        assert frames.size() == whole.split("\n").length;
+        assert join(frames).equals(whole);
+    }
+
+}
@@ -74,4 +74,23 @@ public class YAMLTest {
         assert dumped.equals("!Node {\"id\":42,\"labels\":[\"Fruit\"],\"properties\":{\"name\":\"orange\"}}");
     }
 
+    @Test
+    public void testCanDumpPrimitiveArray() throws IOException {
+        String dumped = YAML.dump(new long[] {2, 3, 5, 8});
+        assert dumped.equals("[2,3,5,8]");
+    }
+
+    @Test
+    public void testCanDumpEscapedString() throws IOException {
+        String dumped = YAML.dump("say \"hi\"\n");
+        assert dumped.equals("\"say \\\"hi\\\"\\n\"");
+    }
+
+    @Test
+    public void testCanWriteIntoExistingBuffer() throws IOException {
+        StringBuilder builder = new StringBuilder("body: ");
+        YAML.write(builder, Arrays.asList(1, "two"));
+        assert builder.toString().equals("body: [1,\"two\"]");
+    }
+
 }
@@ -47,4 +47,13 @@ public class RequestTest {
         assert string.equals("GET Node {\"id\":1}");
     }
 
+    @Test
+    public void testCanParseRequestFromWithinByteArray() throws ClientError {
+        byte[] data = "GET Node {\"id\":1}\nGET Node {\"id\":2}\n".getBytes();
+        Request request = Request.parse(data, 18, 17);
+        assert request.getMethod().equals("GET");
+        assert request.getResource().equals("Node");
+        assert request.getArgument("id").equals(2);
+    }
+
 }